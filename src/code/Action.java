@@ -3,6 +3,11 @@ package code;
 /**
  * Action enumeration for the delivery problem.
  * Represents possible movements a truck can make.
+ *
+ * A cell may be the entrance of several tunnels; TUNNEL alone does not say
+ * which one is ridden (result takes the first). Printed routes name the
+ * exit of such a ride as "tunnel@x:y" (see tunnelTo), which fromString
+ * reads back as TUNNEL and exitOf as the exit.
  */
 public enum Action {
     UP("up"),
@@ -11,6 +16,8 @@ public enum Action {
     RIGHT("right"),
     TUNNEL("tunnel");
 
+    private static final String TUNNEL_TO = "tunnel@";
+
     private final String displayName;
 
     Action(String displayName) {
@@ -22,10 +29,40 @@ public enum Action {
         return displayName;
     }
 
+    /**
+     * Printed name of the TUNNEL ride that ends at exit. Has no comma, so
+     * comma-separated routes stay one token per action.
+     */
+    public static String tunnelTo(State exit) {
+        return TUNNEL_TO + exit.x + ":" + exit.y;
+    }
+
+    /**
+     * The exit named by a "tunnel@x:y" token, or null for any other action.
+     */
+    public static State exitOf(String s) {
+        String name = s.trim().toLowerCase();
+        if (!name.startsWith(TUNNEL_TO)) {
+            return null;
+        }
+        String[] xy = name.substring(TUNNEL_TO.length()).split(":");
+        try {
+            if (xy.length == 2) {
+                return new State(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Unknown action: " + s);
+    }
+
     /**
      * Parse action from string representation.
      */
     public static Action fromString(String s) {
+        if (exitOf(s) != null) {
+            return TUNNEL;
+        }
         switch (s.toLowerCase()) {
             case "up": return UP;
             case "down": return DOWN;
@@ -35,4 +72,4 @@ public enum Action {
             default: throw new IllegalArgumentException("Unknown action: " + s);
         }
     }
-}
\ No newline at end of file
+}
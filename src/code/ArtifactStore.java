@@ -0,0 +1,389 @@
+package code;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache of preprocessing results (landmark tables, SCC ids, distance
+ * matrices), so a new JVM can load them instead of recomputing.
+ *
+ * Artifacts are keyed by a SHA-256 hash of the initialState and traffic
+ * strings plus a kind naming the artifact and its parameters (for example
+ * "landmarks-8-FARTHEST"); each is one file, key.kind.bin, in the store's
+ * directory.
+ *
+ * FILE FORMAT (little-endian):
+ *   header:  int MAGIC, int VERSION, 32-byte key, int kind length, kind
+ *            bytes (UTF-8), int section count, int CRC32 of the header
+ *            before it; padded to 8 bytes
+ *   section: int type, int element count, int CRC32 of the payload, int 0,
+ *            payload; padded to 8 bytes
+ *
+ * Files are read through FileChannel.map: sections are checked and bulk
+ * copied straight from the page cache into primitive arrays. A bad magic,
+ * version, key, kind, size or checksum makes {@link #read} return null, and
+ * callers recompute (and rewrite) the artifact. Files are written to a
+ * temporary name and moved into place, so readers never see half a file.
+ */
+public final class ArtifactStore {
+
+    /** Directory used by {@link #configured()} (system property). */
+    public static final String DIRECTORY_PROPERTY = "delivery.artifacts";
+
+    static final int MAGIC = 0x41564C44;   // "DLVA"
+    static final int VERSION = 1;
+
+    private static final int INTS = 1;
+    private static final int LONGS = 2;
+    private static final int CHARS = 3;
+    private static final int BYTES = 4;
+
+    private final Path directory;
+    private int hits;
+    private int misses;
+    private int rejected;
+
+    public ArtifactStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Store in the directory named by the delivery.artifacts system property,
+     * or null if it is not set.
+     */
+    public static ArtifactStore configured() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory == null || directory.isEmpty() ? null : new ArtifactStore(Paths.get(directory));
+    }
+
+    /**
+     * Hex SHA-256 of the format version and both input strings.
+     */
+    public static String key(String initialState, String traffic) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(("v" + VERSION + "\0").getBytes(StandardCharsets.UTF_8));
+            digest.update(initialState.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(traffic.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Writes the sections of one artifact.
+     */
+    public interface Encoder {
+        void encode(Writer out) throws IOException;
+    }
+
+    /**
+     * Rebuilds an object from the sections of one artifact; throws
+     * IOException if they do not fit the object.
+     */
+    public interface Decoder<T> {
+        T decode(Reader in) throws IOException;
+    }
+
+    public Path pathOf(String key, String kind) {
+        return directory.resolve(key + "." + kind + ".bin");
+    }
+
+    /**
+     * Load an artifact, or null if it is missing or fails validation.
+     */
+    public <T> T read(String key, String kind, Decoder<T> decoder) {
+        Path path = pathOf(key, kind);
+        if (!Files.isRegularFile(path)) {
+            synchronized (this) {
+                misses++;
+            }
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            T value = decoder.decode(new Reader(channel, key, kind));
+            synchronized (this) {
+                hits++;
+            }
+            return value;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[WARNING] Ignoring artifact " + path.getFileName() + ": " + e.getMessage());
+            synchronized (this) {
+                rejected++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Write an artifact, replacing any previous file. Returns false (after a
+     * warning) if the file could not be written.
+     */
+    public boolean write(String key, String kind, Encoder encoder) {
+        Path path = pathOf(key, kind);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                Writer writer = new Writer(channel, key, kind);
+                encoder.encode(writer);
+                writer.finish();
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("[WARNING] Could not write artifact " + path.getFileName() + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // nothing left to clean up
+            }
+            return false;
+        }
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /** Artifacts that existed but failed validation. */
+    public synchronized int getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return "ArtifactStore(" + directory + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", rejected=" + getRejected() + ")";
+    }
+
+    private static byte[] rawKey(String key) throws IOException {
+        if (key.length() != 64) {
+            throw new IOException("bad key " + key);
+        }
+        byte[] raw = new byte[32];
+        for (int i = 0; i < 32; i++) {
+            raw[i] = (byte) Integer.parseInt(key.substring(2 * i, 2 * i + 2), 16);
+        }
+        return raw;
+    }
+
+    private static int padding(long position) {
+        return (int) ((8 - (position & 7)) & 7);
+    }
+
+    /**
+     * Sequential section writer. The section count in the header is patched
+     * in by finish().
+     */
+    public static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer header;
+        private int sections;
+
+        Writer(FileChannel channel, String key, String kind) throws IOException {
+            this.channel = channel;
+            byte[] kindBytes = kind.getBytes(StandardCharsets.UTF_8);
+            int length = 4 + 4 + 32 + 4 + kindBytes.length + 4 + 4;
+            this.header = ByteBuffer.allocate(length + padding(length)).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).put(rawKey(key)).putInt(kindBytes.length).put(kindBytes);
+            channel.write(ByteBuffer.allocate(header.capacity()));   // placeholder, see finish
+        }
+
+        public void putInts(int[] values) throws IOException {
+            ByteBuffer payload = payload(values.length * 4L);
+            payload.asIntBuffer().put(values);
+            section(INTS, values.length, payload);
+        }
+
+        public void putLongs(long[] values) throws IOException {
+            ByteBuffer payload = payload(values.length * 8L);
+            payload.asLongBuffer().put(values);
+            section(LONGS, values.length, payload);
+        }
+
+        public void putChars(char[] values) throws IOException {
+            ByteBuffer payload = payload(values.length * 2L);
+            payload.asCharBuffer().put(values);
+            section(CHARS, values.length, payload);
+        }
+
+        public void putBytes(byte[] values) throws IOException {
+            section(BYTES, values.length, ByteBuffer.wrap(values));
+        }
+
+        private static ByteBuffer payload(long bytes) throws IOException {
+            if (bytes > Integer.MAX_VALUE - 8) {
+                throw new IOException("section too large: " + bytes + " bytes");
+            }
+            return ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void section(int type, int count, ByteBuffer payload) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            ByteBuffer head = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            head.putInt(type).putInt(count).putInt((int) crc.getValue()).putInt(0).flip();
+            writeFully(head);
+            writeFully(payload);
+            writeFully(ByteBuffer.allocate(padding(channel.position())));
+            sections++;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        void finish() throws IOException {
+            header.putInt(sections);
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, header.position());
+            header.putInt((int) crc.getValue());
+            header.position(header.capacity()).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());   // file offset == buffer offset
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Sequential section reader over a memory-mapped file. Every section is
+     * checked (type, size, CRC32) before it is copied out.
+     */
+    public static final class Reader {
+        private final FileChannel channel;
+        private final ByteBuffer whole;   // the mapped file, or null if over 2 GB
+        private final int sectionCount;
+        private long position;
+        private int sectionsRead;
+
+        Reader(FileChannel channel, String key, String kind) throws IOException {
+            this.channel = channel;
+            this.whole = channel.size() <= Integer.MAX_VALUE
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    : null;
+            byte[] kindBytes = kind.getBytes(StandardCharsets.UTF_8);
+            int length = 4 + 4 + 32 + 4 + kindBytes.length + 4 + 4;
+            if (channel.size() < length) {
+                throw new IOException("truncated header");
+            }
+            ByteBuffer header = map(0, length);
+            if (header.getInt() != MAGIC) throw new IOException("bad magic");
+            if (header.getInt() != VERSION) throw new IOException("unsupported version");
+            byte[] fileKey = new byte[32];
+            header.get(fileKey);
+            if (!java.util.Arrays.equals(fileKey, rawKey(key))) throw new IOException("key mismatch");
+            if (header.getInt() != kindBytes.length) throw new IOException("kind mismatch");
+            byte[] fileKind = new byte[kindBytes.length];
+            header.get(fileKind);
+            if (!java.util.Arrays.equals(fileKind, kindBytes)) throw new IOException("kind mismatch");
+            this.sectionCount = header.getInt();
+            CRC32 crc = new CRC32();
+            ByteBuffer checked = header.duplicate();
+            checked.position(0).limit(length - 4);
+            crc.update(checked);
+            if (header.getInt() != (int) crc.getValue()) throw new IOException("header checksum mismatch");
+            this.position = length + padding(length);
+        }
+
+        /**
+         * A little-endian view of [offset, offset + size): a slice of the
+         * whole-file mapping, or its own mapping for files over 2 GB.
+         */
+        private ByteBuffer map(long offset, long size) throws IOException {
+            if (whole == null) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                return buffer.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            ByteBuffer view = whole.duplicate();
+            view.position((int) offset).limit((int) (offset + size));
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public int sectionCount() {
+            return sectionCount;
+        }
+
+        public int[] ints() throws IOException {
+            ByteBuffer payload = next(INTS, 4);
+            int[] values = new int[payload.remaining() / 4];
+            payload.asIntBuffer().get(values);
+            return values;
+        }
+
+        public long[] longs() throws IOException {
+            ByteBuffer payload = next(LONGS, 8);
+            long[] values = new long[payload.remaining() / 8];
+            payload.asLongBuffer().get(values);
+            return values;
+        }
+
+        public char[] chars() throws IOException {
+            ByteBuffer payload = next(CHARS, 2);
+            char[] values = new char[payload.remaining() / 2];
+            payload.asCharBuffer().get(values);
+            return values;
+        }
+
+        public byte[] bytes() throws IOException {
+            ByteBuffer payload = next(BYTES, 1);
+            byte[] values = new byte[payload.remaining()];
+            payload.get(values);
+            return values;
+        }
+
+        private ByteBuffer next(int type, int elementBytes) throws IOException {
+            if (sectionsRead == sectionCount) {
+                throw new IOException("missing section " + sectionsRead);
+            }
+            if (position + 16 > channel.size()) {
+                throw new IOException("truncated section " + sectionsRead);
+            }
+            ByteBuffer head = map(position, 16);
+            int fileType = head.getInt();
+            long bytes = (long) head.getInt() * elementBytes;
+            int checksum = head.getInt();
+            if (fileType != type) {
+                throw new IOException("section " + sectionsRead + " has type " + fileType + ", expected " + type);
+            }
+            if (bytes < 0 || position + 16 + bytes > channel.size()) {
+                throw new IOException("truncated section " + sectionsRead);
+            }
+            ByteBuffer payload = map(position + 16, bytes);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("checksum mismatch in section " + sectionsRead);
+            }
+            position += 16 + bytes + padding(position + 16 + bytes);
+            sectionsRead++;
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package code;
+
+/**
+ * Indexed graph whose edges can also be walked backwards, for searches
+ * and tables that grow from a target (landmarks, one-to-many, HPA).
+ */
+public interface BidirectionalGraph<State, Action> extends IndexedGraph<State, Action> {
+
+    /**
+     * Report every edge (pred --action--> index) ending in the given state.
+     * The action passed to the visitor is the forward action taken at pred.
+     */
+    void forEachPredecessor(int index, IndexedTransitionVisitor<Action> visitor);
+}
@@ -0,0 +1,22 @@
+package code;
+
+/**
+ * Indexed problem with a single known goal whose edges can also be walked
+ * backwards. Needed by the bidirectional strategies (BUC, BAS1, BAS2), which
+ * grow one search from the initial state and one from the goal.
+ */
+public interface BidirectionalProblem<State, Action>
+        extends IndexedProblem<State, Action>, BidirectionalGraph<State, Action> {
+
+    /**
+     * The single goal state.
+     */
+    State goalState();
+
+    /**
+     * Counterpart of a forward heuristic for the backward search: a lower
+     * bound on the cost from the initial state to a state. Returns null when
+     * no such bound is available (the backward search then runs uninformed).
+     */
+    Heuristic<State> reverseHeuristic(Heuristic<State> forward);
+}
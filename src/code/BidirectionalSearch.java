@@ -0,0 +1,207 @@
+package code;
+
+import java.util.*;
+
+/**
+ * Bidirectional uniform cost / A* search for {@link BidirectionalProblem}s.
+ *
+ * One search grows from the initial state over forward edges, the other from
+ * the goal over reversed edges, and every relaxation that touches a state
+ * already reached by the other side updates mu, the cheapest complete path
+ * seen so far. The side with the smaller frontier is expanded next.
+ *
+ * Stopping rule: stop when topF + topB >= mu. Any path not seen yet costs
+ * at least the sum of the two smallest keys, so mu is optimal.
+ *
+ * A* uses the average potential p(v) = (hF(v) - hB(v)) / 2, where hF bounds
+ * the cost to the goal and hB the cost from the start: forward keys are
+ * g + p, backward keys g - p. With consistent heuristics the reduced edge
+ * costs c(u, v) - p(u) + p(v) stay non-negative and p cancels on every
+ * complete path, so the uniform cost stopping rule carries over unchanged
+ * (the simpler max(fminF, fminB) >= mu rule stops much later in practice).
+ */
+final class BidirectionalSearch<S, A> {
+
+    private final BidirectionalProblem<S, A> problem;
+
+    // Forward tree: parent[v] --parentAction[v]--> v (trees are null in cost-only searches)
+    private final double[] gForward;
+    private final int[] parent;
+    private final Object[] parentAction;
+
+    // Backward tree: v --nextAction[v]--> next[v]
+    private final double[] gBackward;
+    private final int[] next;
+    private final Object[] nextAction;
+
+    private Heuristic<S> forwardHeuristic;   // bounds cost to the goal
+    private Heuristic<S> backwardHeuristic;  // bounds cost from the start
+    private double[] potentials;             // NaN until computed
+
+    private final double costBound;
+    private double mu = Double.POSITIVE_INFINITY;
+    private int meeting = -1;
+    private int nodesExpanded;
+    private int peakFrontier;
+    private int heuristicCalls;
+
+    private BidirectionalSearch(BidirectionalProblem<S, A> problem, boolean costOnly, double costBound) {
+        int count = problem.stateCount();
+        this.problem = problem;
+        this.gForward = new double[count];
+        this.parent = costOnly ? null : new int[count];
+        this.parentAction = costOnly ? null : new Object[count];
+        this.gBackward = new double[count];
+        this.next = costOnly ? null : new int[count];
+        this.nextAction = costOnly ? null : new Object[count];
+        this.costBound = costBound;
+        Arrays.fill(gForward, Double.POSITIVE_INFINITY);
+        Arrays.fill(gBackward, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param heuristic forward heuristic, or null for bidirectional uniform cost
+     * @param options only costOnly and costBound are used
+     */
+    static <S, A> GenericSearch.SearchResult<S, A> search(BidirectionalProblem<S, A> problem,
+                                                          Heuristic<S> heuristic, SearchOptions options) {
+        return new BidirectionalSearch<>(problem, options.costOnly, options.costBound).run(heuristic);
+    }
+
+    private GenericSearch.SearchResult<S, A> run(Heuristic<S> heuristic) {
+        forwardHeuristic = heuristic;
+        backwardHeuristic = heuristic == null ? null : problem.reverseHeuristic(heuristic);
+        if (heuristic != null) {
+            potentials = new double[gForward.length];
+            Arrays.fill(potentials, Double.NaN);
+        }
+
+        int source = problem.indexOf(problem.initialState());
+        int target = problem.indexOf(problem.goalState());
+        if (problem.isGoalIndex(source)) {
+            return costBound < 0
+                    ? new GenericSearch.SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, 0, 1, 0, true)
+                    : new GenericSearch.SearchResult<>(new ArrayList<>(), 0, 0, 1);
+        }
+
+        IndexedHeap forward = new IndexedHeap(gForward.length, 4);
+        IndexedHeap backward = new IndexedHeap(gBackward.length, 4);
+
+        gForward[source] = 0;
+        gBackward[target] = 0;
+        if (parent != null) {
+            parent[source] = -1;
+            next[target] = -1;
+        }
+        forward.insertOrDecrease(source, potential(source));
+        backward.insertOrDecrease(target, -potential(target));
+
+        boolean boundExceeded = false;
+        while (!forward.isEmpty() && !backward.isEmpty()) {
+            double lowerBound = forward.topKey() + backward.topKey();
+            if (lowerBound >= mu) {
+                break;
+            }
+            if (lowerBound > costBound) {
+                boundExceeded = true;
+                break;
+            }
+
+            if (forward.size() <= backward.size()) {
+                expandForward(forward);
+            } else {
+                expandBackward(backward);
+            }
+            peakFrontier = Math.max(peakFrontier, forward.size() + backward.size());
+        }
+
+        // Also when the cheapest path was found but costs more than the bound
+        boundExceeded |= meeting != -1 && mu > costBound;
+        if (meeting == -1 || boundExceeded) {
+            return new GenericSearch.SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY,
+                    nodesExpanded, peakFrontier, heuristicCalls, boundExceeded);
+        }
+        return new GenericSearch.SearchResult<>(extractPath(), mu, nodesExpanded, peakFrontier,
+                heuristicCalls);
+    }
+
+    private void expandForward(IndexedHeap frontier) {
+        int id = frontier.pop();
+        nodesExpanded++;
+
+        problem.forEachSuccessor(id, (action, child, cost) -> {
+            double newCost = gForward[id] + cost;
+            if (newCost < gForward[child]) {
+                gForward[child] = newCost;
+                if (parent != null) {
+                    parent[child] = id;
+                    parentAction[child] = action;
+                }
+                frontier.insertOrDecrease(child, newCost + potential(child));
+                meet(child);
+            }
+        });
+    }
+
+    private void expandBackward(IndexedHeap frontier) {
+        int id = frontier.pop();
+        nodesExpanded++;
+
+        problem.forEachPredecessor(id, (action, pred, cost) -> {
+            double newCost = gBackward[id] + cost;
+            if (newCost < gBackward[pred]) {
+                gBackward[pred] = newCost;
+                if (next != null) {
+                    next[pred] = id;
+                    nextAction[pred] = action;
+                }
+                frontier.insertOrDecrease(pred, newCost - potential(pred));
+                meet(pred);
+            }
+        });
+    }
+
+    private void meet(int id) {
+        double total = gForward[id] + gBackward[id];
+        if (total < mu) {
+            mu = total;
+            meeting = id;
+        }
+    }
+
+    /**
+     * Forward potential; the backward search uses its negation. Computed once
+     * per state, since both sides ask for it.
+     */
+    private double potential(int id) {
+        if (forwardHeuristic == null) {
+            return 0;
+        }
+        double value = potentials[id];
+        if (Double.isNaN(value)) {
+            S state = problem.stateAt(id);
+            double toGoal = forwardHeuristic.h(state);
+            double fromStart = backwardHeuristic == null ? 0 : backwardHeuristic.h(state);
+            heuristicCalls += backwardHeuristic == null ? 1 : 2;
+            value = (toGoal - fromStart) / 2;
+            potentials[id] = value;
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<A> extractPath() {
+        List<A> path = new ArrayList<>();
+        if (parent == null) {
+            return path;
+        }
+        for (int id = meeting; parent[id] != -1; id = parent[id]) {
+            path.add((A) parentAction[id]);
+        }
+        Collections.reverse(path);
+        for (int id = meeting; next[id] != -1; id = next[id]) {
+            path.add((A) nextAction[id]);
+        }
+        return path;
+    }
+}
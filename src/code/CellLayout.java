@@ -0,0 +1,98 @@
+package code;
+
+import java.util.Arrays;
+
+/**
+ * The ids of an m x n grid's cells under a {@link CellOrder}.
+ *
+ * Curve orders keep two rank tables: the id of every row-major cell and the
+ * row-major cell of every id. ROW_MAJOR needs no tables and computes ids
+ * with arithmetic, so grids that do not ask for another order pay nothing.
+ */
+public final class CellLayout {
+
+    public final int m;
+    public final int n;
+    public final CellOrder order;
+
+    private final int[] idOf;     // row-major cell -> id, null for ROW_MAJOR
+    private final int[] cellOf;   // id -> row-major cell, null for ROW_MAJOR
+    private final int[] step;     // row-major id offsets of UP, DOWN, LEFT, RIGHT
+
+    private CellLayout(int m, int n, CellOrder order, int[] idOf, int[] cellOf) {
+        this.m = m;
+        this.n = n;
+        this.order = order;
+        this.idOf = idOf;
+        this.cellOf = cellOf;
+        this.step = new int[]{-n, n, -1, 1};
+    }
+
+    public static CellLayout rowMajor(int m, int n) {
+        return new CellLayout(m, n, CellOrder.ROW_MAJOR, null, null);
+    }
+
+    /**
+     * Layout of an m x n grid: cells sorted by their curve key, ids are the
+     * ranks. O(m * n log(m * n)).
+     */
+    public static CellLayout of(int m, int n, CellOrder order) {
+        if (order == CellOrder.ROW_MAJOR) {
+            return rowMajor(m, n);
+        }
+        int side = Integer.highestOneBit(Math.max(1, Math.max(m, n) - 1)) << 1;
+        int cells = m * n;
+        // Key (below 2^32) in the high bits, row-major cell in the low 32;
+        // flipping the sign bit makes the signed sort an unsigned one
+        long[] keyed = new long[cells];
+        for (int x = 0; x < m; x++) {
+            for (int y = 0; y < n; y++) {
+                keyed[x * n + y] = (order.key(x, y, side) << 32 | (x * n + y)) ^ Long.MIN_VALUE;
+            }
+        }
+        Arrays.sort(keyed);
+        int[] idOf = new int[cells];
+        int[] cellOf = new int[cells];
+        for (int id = 0; id < cells; id++) {
+            int cell = (int) keyed[id];
+            cellOf[id] = cell;
+            idOf[cell] = id;
+        }
+        return new CellLayout(m, n, order, idOf, cellOf);
+    }
+
+    public int id(int x, int y) {
+        return idOf == null ? x * n + y : idOf[x * n + y];
+    }
+
+    public int x(int id) {
+        return (cellOf == null ? id : cellOf[id]) / n;
+    }
+
+    public int y(int id) {
+        return (cellOf == null ? id : cellOf[id]) % n;
+    }
+
+    /**
+     * Id of the neighbour of id in direction d, or -1 off the grid.
+     */
+    public int neighbour(int id, int d) {
+        int cell = cellOf == null ? id : cellOf[id];
+        int x = cell / n + TrafficGrid.DX[d];
+        int y = cell % n + TrafficGrid.DY[d];
+        return x >= 0 && x < m && y >= 0 && y < n ? id(x, y) : -1;
+    }
+
+    /**
+     * Id of the neighbour of id in direction d, which must lie in the grid
+     * (an open road leads there).
+     */
+    public int adjacent(int id, int d) {
+        return cellOf == null ? id + step[d] : idOf[cellOf[id] + step[d]];
+    }
+
+    @Override
+    public String toString() {
+        return "CellLayout(" + m + "x" + n + ", " + order + ")";
+    }
+}
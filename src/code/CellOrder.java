@@ -0,0 +1,68 @@
+package code;
+
+/**
+ * Numbering of grid cells (and so of DeliverySearch state ids and every
+ * array indexed by them).
+ *
+ * ROW_MAJOR is x * n + y. MORTON (Z-order) and HILBERT number cells along a
+ * space-filling curve, so cells that are close on the grid get close ids: a
+ * search growing a diamond-shaped region touches fewer cache lines of its
+ * g-value, back-pointer and traffic arrays. Curve positions are ranked to
+ * dense ids 0 .. m * n - 1 (see CellLayout), so any m x n grid works.
+ */
+public enum CellOrder {
+    ROW_MAJOR,
+    MORTON,
+    HILBERT;
+
+    /**
+     * Position of cell (x, y) along this order's curve; side is a power of
+     * two covering both grid dimensions.
+     */
+    long key(int x, int y, int side) {
+        switch (this) {
+            case MORTON:
+                return spread(x) << 1 | spread(y);
+            case HILBERT:
+                return hilbert(x, y, side);
+            default:
+                return (long) x * side + y;
+        }
+    }
+
+    /**
+     * Bits of v moved to the even positions (bit i to bit 2i).
+     */
+    private static long spread(int v) {
+        long b = v & 0xFFFFFFFFL;
+        b = (b | (b << 16)) & 0x0000FFFF0000FFFFL;
+        b = (b | (b << 8)) & 0x00FF00FF00FF00FFL;
+        b = (b | (b << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        b = (b | (b << 2)) & 0x3333333333333333L;
+        b = (b | (b << 1)) & 0x5555555555555555L;
+        return b;
+    }
+
+    /**
+     * Distance of (x, y) along the Hilbert curve filling a side x side square.
+     */
+    private static long hilbert(int x, int y, int side) {
+        long d = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // Rotate the quadrant so the sub-curve has the standard orientation
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+}
@@ -0,0 +1,557 @@
+package code;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Contraction hierarchy over an {@link IndexedGraph}, for answering
+ * many point-to-point queries on a graph that rarely changes.
+ *
+ * PREPROCESSING:
+ * - states are contracted one by one, least important first (edge
+ *   difference + contracted neighbours, updated lazily)
+ * - contracting v adds a shortcut u -> w for every in/out neighbour pair
+ *   whose cheapest path runs through v; a bounded witness search from u
+ *   that avoids v skips shortcuts that are not needed
+ * - the contraction order is the rank; edges are then split into an upward
+ *   out-list and an upward in-list per state (CSR arrays)
+ *
+ * QUERY: bidirectional Dijkstra in which both sides only climb in rank. A
+ * side stops once its smallest key reaches the best meeting cost. Shortcuts
+ * remember the two edges they replace, so the path unpacks recursively into
+ * the original actions.
+ *
+ * Step costs must be integers (see {@link Graph#integerStepCostBound()}).
+ * Each query borrows a workspace of full-size arrays from a pool and
+ * clears only the entries it touched, so sequential queries allocate
+ * nothing and concurrent ones do not share state.
+ */
+public final class ContractionHierarchy<S, A> {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    /** Witness searches give up after settling this many states. */
+    private static final int WITNESS_SETTLE_LIMIT = 150;
+
+    private final IndexedGraph<S, A> problem;
+    private final int count;
+    private final int[] rank;
+
+    // Edges (original and shortcut): from --cost--> to. Originals keep their
+    // action, shortcuts the ids of the two edges they replace.
+    private final EdgeList edges = new EdgeList();
+    private int originalEdges;
+    private int replacedOriginals;   // originals overwritten by a cheaper shortcut
+
+    // Upward graph (CSR): out-edges to higher ranks, in-edges from higher ranks
+    private int[] upOffsets;
+    private int[] upEdges;
+    private int[] downOffsets;
+    private int[] downEdges;
+
+    private final long preprocessingNanos;
+
+    // Query scratch, one per concurrent query; returned to the pool afterwards
+    private final Queue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+
+    public ContractionHierarchy(IndexedGraph<S, A> problem) {
+        if (problem.integerStepCostBound() < 0) {
+            throw new IllegalArgumentException("Contraction hierarchies need integer step costs");
+        }
+        long startTime = System.nanoTime();
+
+        this.problem = problem;
+        this.count = problem.stateCount();
+        this.rank = new int[count];
+
+        new Builder().contract();
+
+        this.preprocessingNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Cheapest path between two states.
+     */
+    public GenericSearch.SearchResult<S, A> query(S source, S target) {
+        return query(problem.indexOf(source), problem.indexOf(target));
+    }
+
+    /**
+     * Cheapest path between two state ids. nodesExpanded counts the states
+     * settled by both sides; the cost is infinite if target is unreachable.
+     * Runs on a workspace of its own, so queries may overlap.
+     */
+    public GenericSearch.SearchResult<S, A> query(int source, int target) {
+        if (source == target) {
+            return new GenericSearch.SearchResult<>(new ArrayList<>(), 0, 0, 1);
+        }
+        Workspace workspace = workspaces.poll();
+        if (workspace == null) {
+            workspace = new Workspace();
+        }
+        try {
+            return workspace.query(source, target);
+        } finally {
+            workspaces.offer(workspace);
+        }
+    }
+
+    /**
+     * Distances, tree edges and heaps of one query. Arrays are sized for
+     * every state once; a query clears only the entries it touched.
+     */
+    private final class Workspace {
+        private final int[] distForward = new int[count];
+        private final int[] distBackward = new int[count];
+        private final int[] edgeForward = new int[count];    // edge reaching v in the forward tree
+        private final int[] edgeBackward = new int[count];   // edge leaving v in the backward tree
+        private final IndexedHeap heapForward = new IndexedHeap(count, 4);
+        private final IndexedHeap heapBackward = new IndexedHeap(count, 4);
+        private final IntList touched = new IntList();
+        private final IntList upward = new IntList();   // forward tree edges, meeting state first
+        private final IntList unpackStack = new IntList();
+
+        Workspace() {
+            Arrays.fill(distForward, INF);
+            Arrays.fill(distBackward, INF);
+        }
+
+        GenericSearch.SearchResult<S, A> query(int source, int target) {
+            reach(distForward, edgeForward, heapForward, source, 0, -1);
+            reach(distBackward, edgeBackward, heapBackward, target, 0, -1);
+
+            int best = INF;
+            int meeting = -1;
+            int nodesExpanded = 0;
+            int peakFrontier = 2;
+            boolean forwardDone = false;
+            boolean backwardDone = false;
+
+            while (!forwardDone || !backwardDone) {
+                forwardDone = forwardDone || heapForward.isEmpty() || heapForward.topKey() >= best;
+                if (!forwardDone) {
+                    int u = heapForward.pop();
+                    nodesExpanded++;
+                    int du = distForward[u];
+                    if (distBackward[u] != INF && du + distBackward[u] < best) {
+                        best = du + distBackward[u];
+                        meeting = u;
+                    }
+                    if (!stalled(distForward, u, downOffsets, downEdges, true)) {
+                        for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++) {
+                            int e = upEdges[i];
+                            reach(distForward, edgeForward, heapForward, edges.to[e], du + edges.cost[e], e);
+                        }
+                    }
+                }
+
+                backwardDone = backwardDone || heapBackward.isEmpty() || heapBackward.topKey() >= best;
+                if (!backwardDone) {
+                    int v = heapBackward.pop();
+                    nodesExpanded++;
+                    int dv = distBackward[v];
+                    if (distForward[v] != INF && dv + distForward[v] < best) {
+                        best = dv + distForward[v];
+                        meeting = v;
+                    }
+                    if (!stalled(distBackward, v, upOffsets, upEdges, false)) {
+                        for (int i = downOffsets[v]; i < downOffsets[v + 1]; i++) {
+                            int e = downEdges[i];
+                            reach(distBackward, edgeBackward, heapBackward, edges.from[e], dv + edges.cost[e], e);
+                        }
+                    }
+                }
+                peakFrontier = Math.max(peakFrontier, heapForward.size() + heapBackward.size());
+            }
+
+            List<A> actions = new ArrayList<>();
+            if (meeting >= 0) {
+                upward.size = 0;
+                for (int v = meeting; edgeForward[v] >= 0; v = edges.from[edgeForward[v]]) {
+                    upward.add(edgeForward[v]);
+                }
+                for (int i = upward.size - 1; i >= 0; i--) {
+                    unpack(upward.data[i], actions);
+                }
+                for (int v = meeting; edgeBackward[v] >= 0; v = edges.to[edgeBackward[v]]) {
+                    unpack(edgeBackward[v], actions);
+                }
+            }
+            reset();
+
+            double cost = meeting >= 0 ? best : Double.POSITIVE_INFINITY;
+            return new GenericSearch.SearchResult<>(actions, cost, nodesExpanded, peakFrontier);
+        }
+
+        /**
+         * Stall-on-demand: v need not be expanded if a higher state already
+         * reached by this side has a cheaper edge into v (for the backward
+         * side: out of v). Such a v cannot lie on a shortest up-down path.
+         */
+        private boolean stalled(int[] dist, int v, int[] offsets, int[] list, boolean forward) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int e = list[i];
+                int other = forward ? edges.from[e] : edges.to[e];
+                if (dist[other] != INF && dist[other] + edges.cost[e] < dist[v]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void reach(int[] dist, int[] via, IndexedHeap heap, int v, int d, int edge) {
+            if (d < dist[v]) {
+                if (distForward[v] == INF && distBackward[v] == INF) {
+                    touched.add(v);
+                }
+                dist[v] = d;
+                via[v] = edge;
+                heap.insertOrDecrease(v, d);
+            }
+        }
+
+        /**
+         * Undo a query: only the states it reached are cleared.
+         */
+        private void reset() {
+            heapForward.clear();
+            heapBackward.clear();
+            for (int i = 0; i < touched.size; i++) {
+                distForward[touched.data[i]] = INF;
+                distBackward[touched.data[i]] = INF;
+            }
+            touched.size = 0;
+        }
+
+        /**
+         * Append the original actions behind an edge, expanding shortcuts.
+         */
+        @SuppressWarnings("unchecked")
+        private void unpack(int edge, List<A> actions) {
+            IntList stack = unpackStack;
+            stack.size = 0;
+            stack.add(edge);
+            while (stack.size > 0) {
+                int e = stack.data[--stack.size];
+                if (edges.first[e] < 0) {
+                    actions.add((A) edges.action[e]);
+                } else {
+                    stack.add(edges.second[e]);
+                    stack.add(edges.first[e]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of shortcut edges added by the contraction.
+     */
+    public int getShortcutCount() {
+        return edges.size - originalEdges + replacedOriginals;
+    }
+
+    /**
+     * Number of original edges left in the hierarchy.
+     */
+    public int getOriginalEdgeCount() {
+        return originalEdges - replacedOriginals;
+    }
+
+    public long getPreprocessingMillis() {
+        return preprocessingNanos / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "ContractionHierarchy(states=" + count + ", edges=" + getOriginalEdgeCount()
+                + ", shortcuts=" + getShortcutCount() + ", preprocessing=" + getPreprocessingMillis() + "ms)";
+    }
+
+    // ------------------ PREPROCESSING ------------------
+
+    /**
+     * Contraction state: dynamic adjacency lists of edge ids over the
+     * states not contracted yet, plus witness search scratch arrays.
+     */
+    private final class Builder {
+        private final IntList[] out = new IntList[count];
+        private final IntList[] in = new IntList[count];
+        private final int[] contractedNeighbours = new int[count];
+        private final int[] level = new int[count];   // depth in the hierarchy so far
+        private final boolean[] isTarget = new boolean[count];
+
+        private final int[] witnessDist = new int[count];
+        private final IndexedHeap witnessHeap = new IndexedHeap(count, 4);
+        private final IntList witnessTouched = new IntList();
+
+        // Shortcuts found by the last contract(v, ...) call: from, to, cost, first, second
+        private final IntList pending = new IntList();
+
+        Builder() {
+            for (int v = 0; v < count; v++) {
+                out[v] = new IntList();
+                in[v] = new IntList();
+            }
+            Arrays.fill(witnessDist, INF);
+
+            // Original edges; of parallel edges only the cheapest is kept
+            for (int u = 0; u < count; u++) {
+                int from = u;
+                problem.forEachSuccessor(u, (action, v, cost) -> {
+                    if (v != from) {
+                        addEdge(from, v, (int) cost, action, -1, -1);
+                    }
+                });
+            }
+            originalEdges = edges.size;
+        }
+
+        void contract() {
+            IndexedHeap queue = new IndexedHeap(count, 4);
+            for (int v = 0; v < count; v++) {
+                queue.insertOrDecrease(v, priority(v));
+            }
+
+            int next = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.pop();
+                // Lazy update: re-queue v if its priority went up meanwhile.
+                // priority(v) leaves v's shortcuts in pending.
+                double current = priority(v);
+                if (!queue.isEmpty() && current > queue.topKey()) {
+                    queue.insertOrDecrease(v, current);
+                    continue;
+                }
+
+                for (int i = 0; i < pending.size; i += 5) {
+                    addEdge(pending.data[i], pending.data[i + 1], pending.data[i + 2], null,
+                            pending.data[i + 3], pending.data[i + 4]);
+                }
+                rank[v] = next++;
+                for (int i = 0; i < out[v].size; i++) {
+                    int w = edges.to[out[v].data[i]];
+                    neighbourContracted(v, w);
+                    removeEdgesTo(in[w], v, false);
+                }
+                for (int i = 0; i < in[v].size; i++) {
+                    int u = edges.from[in[v].data[i]];
+                    neighbourContracted(v, u);
+                    removeEdgesTo(out[u], v, true);
+                }
+            }
+            buildUpwardGraph();
+        }
+
+        private void neighbourContracted(int v, int neighbour) {
+            contractedNeighbours[neighbour]++;
+            level[neighbour] = Math.max(level[neighbour], level[v] + 1);
+        }
+
+        /**
+         * Edge difference plus contracted neighbours and level; small values
+         * first. The last two spread contraction evenly over the grid, which
+         * keeps the upward search spaces small.
+         */
+        private double priority(int v) {
+            findShortcuts(v);
+            int shortcuts = pending.size / 5;
+            int degree = out[v].size + in[v].size;
+            return 2.0 * (shortcuts - degree) + contractedNeighbours[v] + level[v];
+        }
+
+        /**
+         * Drop the edges of a neighbour's list that lead to (or come from) v,
+         * so the adjacency lists only ever hold uncontracted states.
+         */
+        private void removeEdgesTo(IntList list, int v, boolean outgoing) {
+            int kept = 0;
+            for (int i = 0; i < list.size; i++) {
+                int e = list.data[i];
+                if ((outgoing ? edges.to[e] : edges.from[e]) != v) {
+                    list.data[kept++] = e;
+                }
+            }
+            list.size = kept;
+        }
+
+        /**
+         * Fill pending with the shortcuts contracting v would need.
+         */
+        private void findShortcuts(int v) {
+            pending.size = 0;
+            int maxOut = 0;
+            int targets = 0;
+            for (int j = 0; j < out[v].size; j++) {
+                int w = edges.to[out[v].data[j]];
+                maxOut = Math.max(maxOut, edges.cost[out[v].data[j]]);
+                isTarget[w] = true;
+                targets++;
+            }
+
+            for (int i = 0; i < in[v].size; i++) {
+                int inEdge = in[v].data[i];
+                int u = edges.from[inEdge];
+
+                witnessSearch(u, v, edges.cost[inEdge] + maxOut, isTarget[u] ? targets - 1 : targets);
+                for (int j = 0; j < out[v].size; j++) {
+                    int outEdge = out[v].data[j];
+                    int w = edges.to[outEdge];
+                    if (w == u) continue;
+                    int viaV = edges.cost[inEdge] + edges.cost[outEdge];
+                    if (witnessDist[w] > viaV) {
+                        pending.add(u);
+                        pending.add(w);
+                        pending.add(viaV);
+                        pending.add(inEdge);
+                        pending.add(outEdge);
+                    }
+                }
+                clearWitness();
+            }
+
+            for (int j = 0; j < out[v].size; j++) {
+                isTarget[edges.to[out[v].data[j]]] = false;
+            }
+        }
+
+        /**
+         * Dijkstra from u over uncontracted states other than v, up to limit
+         * or until all targets (out-neighbours of v) are settled.
+         */
+        private void witnessSearch(int u, int v, int limit, int targets) {
+            witnessDist[u] = 0;
+            witnessTouched.add(u);
+            witnessHeap.insertOrDecrease(u, 0);
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && witnessHeap.topKey() <= limit
+                    && settled < WITNESS_SETTLE_LIMIT && targets > 0) {
+                int x = witnessHeap.pop();
+                settled++;
+                if (isTarget[x] && x != u) {
+                    targets--;
+                }
+                for (int i = 0; i < out[x].size; i++) {
+                    int e = out[x].data[i];
+                    int y = edges.to[e];
+                    if (y == v) continue;
+                    int d = witnessDist[x] + edges.cost[e];
+                    if (d < witnessDist[y]) {
+                        if (witnessDist[y] == INF) {
+                            witnessTouched.add(y);
+                        }
+                        witnessDist[y] = d;
+                        witnessHeap.insertOrDecrease(y, d);
+                    }
+                }
+            }
+        }
+
+        private void clearWitness() {
+            witnessHeap.clear();
+            for (int i = 0; i < witnessTouched.size; i++) {
+                witnessDist[witnessTouched.data[i]] = INF;
+            }
+            witnessTouched.size = 0;
+        }
+
+        /**
+         * Add from -> to, or lower the cost of an existing edge between them.
+         * Both ends are uncontracted, so no shortcut refers to that edge yet.
+         */
+        private void addEdge(int from, int to, int cost, Object action, int first, int second) {
+            for (int i = 0; i < out[from].size; i++) {
+                int e = out[from].data[i];
+                if (edges.to[e] == to) {
+                    if (cost < edges.cost[e]) {
+                        if (edges.first[e] < 0 && first >= 0) {
+                            replacedOriginals++;
+                        }
+                        edges.set(e, from, to, cost, action, first, second);
+                    }
+                    return;
+                }
+            }
+            int e = edges.add(from, to, cost, action, first, second);
+            out[from].add(e);
+            in[to].add(e);
+        }
+
+        private void buildUpwardGraph() {
+            upOffsets = new int[count + 1];
+            downOffsets = new int[count + 1];
+            for (int e = 0; e < edges.size; e++) {
+                if (rank[edges.to[e]] > rank[edges.from[e]]) {
+                    upOffsets[edges.from[e] + 1]++;
+                } else {
+                    downOffsets[edges.to[e] + 1]++;
+                }
+            }
+            for (int v = 0; v < count; v++) {
+                upOffsets[v + 1] += upOffsets[v];
+                downOffsets[v + 1] += downOffsets[v];
+            }
+            upEdges = new int[upOffsets[count]];
+            downEdges = new int[downOffsets[count]];
+            int[] upFill = Arrays.copyOf(upOffsets, count);
+            int[] downFill = Arrays.copyOf(downOffsets, count);
+            for (int e = 0; e < edges.size; e++) {
+                if (rank[edges.to[e]] > rank[edges.from[e]]) {
+                    upEdges[upFill[edges.from[e]]++] = e;
+                } else {
+                    downEdges[downFill[edges.to[e]]++] = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable parallel arrays of edges.
+     */
+    private static final class EdgeList {
+        int[] from = new int[16];
+        int[] to = new int[16];
+        int[] cost = new int[16];
+        int[] first = new int[16];
+        int[] second = new int[16];
+        Object[] action = new Object[16];
+        int size;
+
+        int add(int f, int t, int c, Object a, int fst, int snd) {
+            if (size == from.length) {
+                int capacity = size * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                cost = Arrays.copyOf(cost, capacity);
+                first = Arrays.copyOf(first, capacity);
+                second = Arrays.copyOf(second, capacity);
+                action = Arrays.copyOf(action, capacity);
+            }
+            set(size, f, t, c, a, fst, snd);
+            return size++;
+        }
+
+        void set(int e, int f, int t, int c, Object a, int fst, int snd) {
+            from[e] = f;
+            to[e] = t;
+            cost[e] = c;
+            action[e] = a;
+            first[e] = fst;
+            second[e] = snd;
+        }
+    }
+
+    /**
+     * Minimal growable int array.
+     */
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package code;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
 
 /**
  * DeliveryPlanner assigns packages to trucks optimally.
@@ -12,14 +14,32 @@ import java.util.*;
  */
 public class DeliveryPlanner {
 
+    /**
+     * Where the truck-customer cost matrix comes from.
+     */
+    public enum CostSource {
+        AUTO,        // ONE_TO_MANY for cost-optimal strategies with several pairs, else SEARCH
+        SEARCH,      // one search per pair with the planner's strategy (cached)
+        ONE_TO_MANY, // one Dijkstra per truck, or a reverse one per customer if fewer
+        ORACLE       // O(1) lookups in the grid's DistanceOracle (optimal costs)
+    }
+
     private final List<State> stores;
     private final List<State> customers;
     private final List<State> trucks;
     private final DeliverySearch ds;
     private final Strategy strategy;
-    
-    // ✅ Cache for path computations
-    private Map<String, String> pathCache;
+    private CostSource costSource = CostSource.AUTO;
+    private boolean costOnlyMatrix;
+    private boolean pruning = true;
+    private ExecutorService executor;   // null: the calling thread
+    private int matrixSearches;
+    private int searchesSkipped;
+    private int searchesCutShort;
+    private double[][] costMatrix;   // last matrix computed, null before assign()
+
+    // ✅ Path computations are cached in ds.getPathCache(), shared by every
+    // planner of the grid and across plan() calls
 
     public DeliveryPlanner(List<State> stores,
                            List<State> customers,
@@ -31,7 +51,95 @@ public class DeliveryPlanner {
         this.trucks = trucks;
         this.ds = ds;
         this.strategy = strategy;
-        this.pathCache = new HashMap<>();
+    }
+
+    /**
+     * Choose how pair costs are computed. ORACLE builds the all-pairs tables
+     * on first use, so it suits small grids with many trucks and customers.
+     */
+    public void setCostSource(CostSource costSource) {
+        this.costSource = costSource;
+    }
+
+    public CostSource getCostSource() {
+        return costSource;
+    }
+
+    /**
+     * The cost source AUTO stands for with this planner's strategy and
+     * fleet. One-to-many costs are exact, so they only replace the costs of
+     * strategies that are themselves cost-optimal.
+     */
+    public CostSource effectiveCostSource() {
+        if (costSource != CostSource.AUTO) {
+            return costSource;
+        }
+        return strategy.isCostOptimal() && Math.max(trucks.size(), customers.size()) > 1
+                ? CostSource.ONE_TO_MANY
+                : CostSource.SEARCH;
+    }
+
+    /**
+     * With SEARCH costs, run the matrix searches cost-only (no parent tree,
+     * no path). Cheaper when most pairs are not assigned; route() then
+     * searches an assigned pair again for its actions.
+     */
+    public void setCostOnlyMatrix(boolean costOnlyMatrix) {
+        this.costOnlyMatrix = costOnlyMatrix;
+    }
+
+    /**
+     * With SEARCH costs, visit each customer's trucks in order of their
+     * lower bound (DeliverySearch.lowerBounds) and only search those that
+     * can still beat the best truck found so far, capping each search at
+     * that truck's cost. Assignments are unchanged; matrix entries of
+     * trucks that cannot win are left infinite. On by default.
+     */
+    public void setPruning(boolean pruning) {
+        this.pruning = pruning;
+    }
+
+    /**
+     * Compute cost matrices with tasks on the given executor: one per
+     * customer column with SEARCH costs, one per one-to-many search with
+     * ONE_TO_MANY. Any executor works, e.g. a fixed pool or, on Java 21,
+     * Executors.newVirtualThreadPerTaskExecutor(); the planner never shuts
+     * it down. null (the default) computes in the calling thread.
+     *
+     * Tasks write disjoint matrix entries and every entry depends only on
+     * its own pair, so costs and assignments do not depend on the executor
+     * or thread count. The counters may: tasks racing on the same pair can
+     * both miss the path cache.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Searches run (or oracle lookups made) for the last cost matrix. With
+     * SEARCH costs these are the path cache misses.
+     */
+    public int getMatrixSearches() {
+        return matrixSearches;
+    }
+
+    /**
+     * Pairs of the last matrix whose lower bound ruled the truck out, so
+     * no search ran.
+     */
+    public int getSearchesSkipped() {
+        return searchesSkipped;
+    }
+
+    /**
+     * Searches of the last matrix stopped by their cost bound.
+     */
+    public int getSearchesCutShort() {
+        return searchesCutShort;
     }
 
     /**
@@ -88,33 +196,150 @@ public class DeliveryPlanner {
      * ✅ USES CACHE to avoid redundant searches
      */
     private double[][] computeCostMatrix() {
-        double[][] costMatrix = new double[trucks.size()][customers.size()];
-        
-        for (int t = 0; t < trucks.size(); t++) {
-            for (int c = 0; c < customers.size(); c++) {
-                // Create cache key
-                String key = trucks.get(t) + "->" + customers.get(c) + ":" + strategy;
-                
-                String pathStr;
-                if (pathCache.containsKey(key)) {
-                    pathStr = pathCache.get(key);
-                } else {
-                    pathStr = DeliverySearch.path(
-                        ds, 
-                        trucks.get(t), 
-                        customers.get(c), 
-                        strategy
-                    );
-                    pathCache.put(key, pathStr);
+        costMatrix = new double[trucks.size()][customers.size()];
+        CostSource source = effectiveCostSource();
+        matrixSearches = 0;
+        searchesSkipped = 0;
+        searchesCutShort = 0;
+
+        if (source == CostSource.ORACLE) {
+            DistanceOracle<State, Action> oracle = ds.getDistanceOracle();
+            for (int t = 0; t < trucks.size(); t++) {
+                for (int c = 0; c < customers.size(); c++) {
+                    costMatrix[t][c] = ds.canReach(trucks.get(t), customers.get(c))
+                            ? oracle.cost(trucks.get(t), customers.get(c))
+                            : Double.POSITIVE_INFINITY;
+                    matrixSearches++;
                 }
-                
-                costMatrix[t][c] = parseCost(pathStr);
             }
+            return costMatrix;
         }
+
+        if (source == CostSource.ONE_TO_MANY) {
+            if (trucks.size() <= customers.size()) {
+                // A row per truck
+                forEachIndex(trucks.size(), t ->
+                        costMatrix[t] = ds.oneToMany(trucks.get(t), customers, false, false).costs());
+                matrixSearches = trucks.size();
+            } else {
+                // A column per customer, searching back towards the trucks
+                forEachIndex(customers.size(), c -> {
+                    OneToManySearch<State, Action> column = ds.oneToMany(customers.get(c), trucks, true, false);
+                    for (int t = 0; t < trucks.size(); t++) {
+                        costMatrix[t][c] = column.cost(t);
+                    }
+                });
+                matrixSearches = customers.size();
+            }
+            return costMatrix;
+        }
+        
+        // Cost-optimal strategies share the exact cost of each pair
+        long missesBefore = ds.getPathCache().getMisses();
+        if (pruning) {
+            int[] skipped = new int[customers.size()];
+            int[] cutShort = new int[customers.size()];
+            forEachIndex(customers.size(), c -> fillPrunedColumn(c, skipped, cutShort));
+            searchesSkipped = Arrays.stream(skipped).sum();
+            searchesCutShort = Arrays.stream(cutShort).sum();
+        } else {
+            forEachIndex(customers.size(), c -> {
+                for (int t = 0; t < trucks.size(); t++) {
+                    costMatrix[t][c] = ds.cachedCost(trucks.get(t), customers.get(c), strategy, costOnlyMatrix).cost;
+                }
+            });
+        }
+        matrixSearches = (int) (ds.getPathCache().getMisses() - missesBefore);
         
         return costMatrix;
     }
 
+    /**
+     * task(0) .. task(count - 1) on the executor (see setExecutor), or in
+     * this thread without one; returns when all are done. Exceptions of a
+     * task are rethrown here.
+     */
+    private void forEachIndex(int count, IntConsumer task) {
+        if (executor == null || count < 2) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            tasks.add(() -> {
+                task.accept(index);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> done : executor.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cost matrix interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Cost matrix failed", e.getCause());
+        }
+    }
+
+    /**
+     * Costs of customer c's column, best lower bound first. findBestTruck
+     * prefers the smaller index among equal costs, so a truck is skipped
+     * only when its bound is above the best cost, or equal to it with a
+     * larger index; a search is capped at the best cost so ties still
+     * complete. A cost above the best one (from the path cache) is stored
+     * as infinite like a capped search, so the column does not depend on
+     * what other columns cached first. Counts go to skipped[c] and
+     * cutShort[c].
+     */
+    private void fillPrunedColumn(int c, int[] skipped, int[] cutShort) {
+        State customer = customers.get(c);
+        double[] lower = ds.lowerBounds(trucks, customer);
+        Integer[] order = new Integer[trucks.size()];
+        for (int t = 0; t < order.length; t++) {
+            order[t] = t;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer t) -> lower[t]).thenComparingInt(t -> t));
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestTruck = -1;
+        for (int t : order) {
+            if (lower[t] == Double.POSITIVE_INFINITY || lower[t] > bestCost
+                    || (lower[t] == bestCost && t > bestTruck)) {
+                costMatrix[t][c] = Double.POSITIVE_INFINITY;
+                skipped[c]++;
+                continue;
+            }
+            GenericSearch.SearchResult<State, Action> result =
+                    ds.cachedCost(trucks.get(t), customer, strategy, costOnlyMatrix, bestCost);
+            if (result.boundExceeded) {
+                cutShort[c]++;
+            }
+            costMatrix[t][c] = result.cost > bestCost ? Double.POSITIVE_INFINITY : result.cost;
+            if (result.cost < bestCost || (result.cost == bestCost && result.cost < Double.POSITIVE_INFINITY
+                    && t < bestTruck)) {
+                bestCost = result.cost;
+                bestTruck = t;
+            }
+        }
+    }
+
+    /**
+     * The planner strategy's full result (actions, cost, nodes) from one
+     * cell to another, searched once per graph version and then reused:
+     * DeliverySearch.plan takes its delivered paths from here.
+     */
+    public GenericSearch.SearchResult<State, Action> route(State from, State to) {
+        return ds.cachedPath(from, to, strategy);
+    }
+
     /**
      * Find the truck with minimum cost to reach customer c.
      */
@@ -132,32 +357,6 @@ public class DeliveryPlanner {
         return (minCost == Double.POSITIVE_INFINITY) ? -1 : bestTruck;
     }
 
-    /**
-     * Extract cost from path string: "actions;cost;nodesExpanded"
-     */
-    private double parseCost(String pathStr) {
-        if (pathStr == null || pathStr.isEmpty()) {
-            return Double.POSITIVE_INFINITY;
-        }
-        
-        // Handle "no path" case
-        if (pathStr.startsWith("no path")) {
-            return Double.POSITIVE_INFINITY;
-        }
-        
-        String[] parts = pathStr.split(";");
-        if (parts.length < 2) {
-            return Double.POSITIVE_INFINITY;
-        }
-        
-        try {
-            return Double.parseDouble(parts[1]);
-        } catch (NumberFormatException e) {
-            System.err.println("[ERROR] Failed to parse cost from: " + pathStr);
-            return Double.POSITIVE_INFINITY;
-        }
-    }
-
     /**
      * Get statistics about the assignment plan.
      * Useful for reporting and debugging.
@@ -176,22 +375,10 @@ public class DeliveryPlanner {
             
             deliveriesPerTruck[truckIdx]++;
             
-            // Use cache if available
-            String key = trucks.get(truckIdx) + "->" + customers.get(customerIdx) + ":" + strategy;
-            String pathStr;
-            
-            if (pathCache.containsKey(key)) {
-                pathStr = pathCache.get(key);
-            } else {
-                pathStr = DeliverySearch.path(
-                    ds, 
-                    trucks.get(truckIdx), 
-                    customers.get(customerIdx), 
-                    strategy
-                );
-            }
-            
-            totalCost += parseCost(pathStr);
+            // The matrix already holds every pair's cost
+            totalCost += costMatrix != null
+                    ? costMatrix[truckIdx][customerIdx]
+                    : route(trucks.get(truckIdx), customers.get(customerIdx)).cost;
         }
         
         int maxDeliveries = 0;
@@ -255,13 +442,17 @@ public class DeliveryPlanner {
         
         AssignmentStats stats = getStats(assignments);
         System.out.println("\n" + stats);
+        System.out.printf("Cost matrix (%s): %d searches, %d skipped by lower bound, %d cut short%n",
+            effectiveCostSource(), matrixSearches, searchesSkipped, searchesCutShort);
         System.out.println("============================\n");
     }
     
     /**
-     * Clear the path cache (useful for testing different strategies)
+     * Clear the grid's path cache, which other planners share (useful for
+     * testing different strategies)
      */
     public void clearCache() {
-        pathCache.clear();
+        ds.getPathCache().clear();
+        costMatrix = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package code;
+
+import java.util.List;
+
+/**
+ * One search between two cells of a DeliverySearch: the start, the goal
+ * and the grid's heuristics bound to that goal (GoalHeuristic.forGoal).
+ *
+ * The grid (traffic, tunnels, preprocessing) is shared and only read by
+ * searches; a query holds everything that depends on the endpoints.
+ * Searches on one grid can therefore run in parallel, each on its own
+ * query. Successors, predecessors and state ids are the grid's.
+ *
+ * A heuristic is bound on the first getH1/getH2/getH4 call, so a strategy
+ * pays only for the one it uses (UC, CH and friends for none). Two threads
+ * sharing a query may both bind it; either result is the same bound.
+ *
+ * Created by DeliverySearch.query.
+ */
+public final class DeliveryQuery implements BidirectionalProblem<State, Action> {
+
+    public final DeliverySearch graph;
+    public final State start;
+    public final State goal;
+    private final int goalIndex;
+
+    // The grid's H1, H2 and H4, and the tunnels they are bound with
+    private final GoalHeuristic grid1;
+    private final GoalHeuristic grid2;
+    private final GoalHeuristic grid4;
+    private final List<Tunnel> tunnels;
+
+    // The same towards goal, bound on first use
+    private Heuristic<State> h1;
+    private Heuristic<State> h2;
+    private Heuristic<State> h4;
+
+    DeliveryQuery(DeliverySearch graph, State start, State goal, GoalHeuristic h1, GoalHeuristic h2,
+                  GoalHeuristic h4, List<Tunnel> tunnels) {
+        this.graph = graph;
+        this.start = start;
+        this.goal = goal;
+        this.goalIndex = graph.indexOf(goal);
+        this.grid1 = h1;
+        this.grid2 = h2;
+        this.grid4 = h4;
+        this.tunnels = tunnels;
+    }
+
+    public Heuristic<State> getH1() {
+        Heuristic<State> h = h1;
+        if (h == null) {
+            h1 = h = grid1.forGoal(goal, tunnels);
+        }
+        return h;
+    }
+
+    public Heuristic<State> getH2() {
+        Heuristic<State> h = h2;
+        if (h == null) {
+            h2 = h = grid2.forGoal(goal, tunnels);
+        }
+        return h;
+    }
+
+    public Heuristic<State> getH4() {
+        Heuristic<State> h = h4;
+        if (h == null) {
+            h4 = h = grid4.forGoal(goal, tunnels);
+        }
+        return h;
+    }
+
+    @Override
+    public State initialState() {
+        return start;
+    }
+
+    @Override
+    public boolean isGoal(State state) {
+        return state.equals(goal);
+    }
+
+    @Override
+    public State goalState() {
+        return goal;
+    }
+
+    @Override
+    public boolean isGoalIndex(int index) {
+        return index == goalIndex;
+    }
+
+    @Override
+    public List<Action> actions(State state) {
+        return graph.actions(state);
+    }
+
+    @Override
+    public State result(State state, Action action) {
+        return graph.result(state, action);
+    }
+
+    @Override
+    public double stepCost(State state, Action action, State nextState) {
+        return graph.stepCost(state, action, nextState);
+    }
+
+    @Override
+    public void forEachSuccessor(State state, TransitionVisitor<State, Action> visitor) {
+        graph.forEachSuccessor(state, visitor);
+    }
+
+    @Override
+    public void forEachSuccessor(int index, IndexedTransitionVisitor<Action> visitor) {
+        graph.forEachSuccessor(index, visitor);
+    }
+
+    @Override
+    public void forEachPredecessor(int index, IndexedTransitionVisitor<Action> visitor) {
+        graph.forEachPredecessor(index, visitor);
+    }
+
+    @Override
+    public int integerStepCostBound() {
+        return graph.integerStepCostBound();
+    }
+
+    @Override
+    public int stateCount() {
+        return graph.stateCount();
+    }
+
+    @Override
+    public int indexOf(State state) {
+        return graph.indexOf(state);
+    }
+
+    @Override
+    public State stateAt(int index) {
+        return graph.stateAt(index);
+    }
+
+    /**
+     * H1 and H2 are symmetric lower bounds, so the grid's heuristic pointed
+     * at the start (over reversed bounds for H2) bounds the remaining cost
+     * of the backward search.
+     */
+    @Override
+    public Heuristic<State> reverseHeuristic(Heuristic<State> forward) {
+        if (forward == null) {
+            return null;
+        }
+        if (forward == h1) {
+            return graph.reverseHeuristic(1, start);
+        }
+        if (forward == h2) {
+            return graph.reverseHeuristic(2, start);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryQuery(" + start + " -> " + goal + ")";
+    }
+}
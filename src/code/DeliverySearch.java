@@ -3,91 +3,208 @@ package code;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class DeliverySearch extends GenericSearch implements Problem<State, Action> {
+public class DeliverySearch extends GenericSearch implements BidirectionalGraph<State, Action> {
 
     private final int m; 
     private final int n; 
-    private final Map<State, Map<State, Integer>> edgeTraffic;
+    private final TrafficGrid traffic;
+    private final CellLayout layout;
     private final List<Tunnel> tunnels;
     private final List<State> stores;
     private final List<State> customers;
     private final List<State> trucks;
 
-    private final Heuristic<State> h1;
-    private final Heuristic<State> h2;
+    private final GoalHeuristic h1;
 
-    private State start;
-    private State goal;
+    // Derived from the traffic levels; rebuilt when the grid's version moves (see refresh)
+    private GoalHeuristic h2;
+    private PortalHeuristic h4;
+    private TrafficAwareHeuristic h2Reverse;   // H2 over reversed roads, for BAS2
+    private int maxStepCost;
+    private volatile long builtVersion;
 
+    // Moves in TrafficGrid direction order
+    private static final int[] DX = TrafficGrid.DX;
+    private static final int[] DY = TrafficGrid.DY;
+    private static final Action[] MOVES = {Action.UP, Action.DOWN, Action.LEFT, Action.RIGHT};
+
+    // Tunnel exits per cell; a cell may have several
+    private final TunnelIndex tunnelIndex;
+
+    private volatile SearchOptions searchOptions = SearchOptions.DEFAULT;
+
+    // H3 (GR3/AS3): landmark tables are built on first use
+    private int landmarkCount = 8;
+    private LandmarkHeuristic.Selection landmarkSelection = LandmarkHeuristic.Selection.FARTHEST;
+    private LandmarkHeuristic h3;
+
+    // CH: contraction hierarchy built on first use
+    private ContractionHierarchy<State, Action> contractionHierarchy;
+
+    // HPA: cluster abstraction built on first use
+    private int clusterSize = 16;
+    private HierarchicalPlanner hierarchicalPlanner;
+
+    // APSP: all-pairs tables built on first use
+    private DistanceOracle<State, Action> distanceOracle;
+
+    // Optional on-disk cache of the preprocessing above, keyed by the input strings
+    private ArtifactStore artifacts;
+    private String artifactKey;
+
+    // Results shared by every planner of this grid
+    private PathCache pathCache = new PathCache();
+
+    // Strongly connected components, for O(1) unreachability checks
+    private StronglyConnectedComponents components;
+
+    /**
+     * Adapter for the nested-map traffic representation; the map is copied
+     * into a {@link TrafficGrid} and not retained.
+     */
     public DeliverySearch(int m, int n, Map<State, Map<State, Integer>> edgeTraffic, 
                           List<Tunnel> tunnels, List<State> stores, List<State> customers, 
-                          List<State> trucks, Heuristic<State> h1, Heuristic<State> h2) {
-        this.m = m;
-        this.n = n;
-        this.edgeTraffic = edgeTraffic;
+                          List<State> trucks, GoalHeuristic h1, GoalHeuristic h2) {
+        this(TrafficGrid.fromMap(m, n, edgeTraffic), tunnels, stores, customers, trucks, h1, h2);
+    }
+
+    public DeliverySearch(TrafficGrid traffic, List<Tunnel> tunnels, List<State> stores,
+                          List<State> customers, List<State> trucks,
+                          GoalHeuristic h1, GoalHeuristic h2) {
+        this.m = traffic.m;
+        this.n = traffic.n;
+        this.traffic = traffic;
         this.tunnels = tunnels;
         this.stores = stores;
         this.customers = customers;
         this.trucks = trucks;
         this.h1 = h1;
+        this.layout = traffic.getLayout();
+        this.tunnelIndex = new TunnelIndex(layout, tunnels);
+        bindTraffic(h2);
+    }
+
+    /**
+     * Heuristics and bounds computed from the traffic levels.
+     */
+    private void bindTraffic(GoalHeuristic h2) {
         this.h2 = h2;
+        this.h4 = new PortalHeuristic(TrafficBounds.of(traffic, true));
+        this.h2Reverse = h2 instanceof TrafficAwareHeuristic
+                ? new TrafficAwareHeuristic(((TrafficAwareHeuristic) h2).getBounds().reversed())
+                : null;
+        this.maxStepCost = computeMaxStepCost();
+        this.builtVersion = traffic.getVersion();
     }
 
-    public void setPath(State start, State goal) {
-        this.start = start;
-        this.goal = goal;
-        if (h1 instanceof ManhattanHeuristic) {
-            ((ManhattanHeuristic) h1).setGoal(goal, tunnels);
+    /**
+     * Bring everything derived from the traffic up to the grid's version
+     * after TrafficGrid.set: H2 (if traffic-aware) is recalibrated like
+     * fromStrings does, H4 and the step-cost bound are recomputed, and SCC,
+     * landmarks, CH, HPA and APSP are dropped to be rebuilt on next use.
+     * The artifact store is detached, since its key names the parsed
+     * traffic. Called by every query entry point; traffic must not change
+     * while searches run.
+     */
+    private void refresh() {
+        if (builtVersion == traffic.getVersion()) {
+            return;
         }
-        if (h2 instanceof TrafficAwareHeuristic) {
-            ((TrafficAwareHeuristic) h2).setGoal(goal, tunnels);
+        synchronized (this) {
+            if (builtVersion == traffic.getVersion()) {
+                return;
+            }
+            h3 = null;
+            contractionHierarchy = null;
+            hierarchicalPlanner = null;
+            distanceOracle = null;
+            components = null;
+            artifacts = null;
+            artifactKey = null;
+            bindTraffic(h2 instanceof TrafficAwareHeuristic
+                    ? new TrafficAwareHeuristic(TrafficBounds.of(traffic, false))
+                    : h2);
         }
     }
 
-    @Override
-    public State initialState() {
-        return start;
+    /**
+     * Step costs are integer traffic levels or integer tunnel lengths.
+     */
+    private int computeMaxStepCost() {
+        int max = traffic.maxTraffic();
+        for (Tunnel tunnel : tunnels) {
+            max = Math.max(max, (int) tunnel.getCost());
+        }
+        return max;
     }
 
-    @Override
-    public boolean isGoal(State state) {
-        return state.equals(goal);
+    public SearchOptions getSearchOptions() {
+        return searchOptions;
     }
 
-    @Override
-    public List<Action> actions(State state) {
-        List<Action> actions = new ArrayList<>();
-        Map<State, Integer> neighbors = edgeTraffic.get(state);
+    /**
+     * Options used by every search this instance runs (path, plan).
+     */
+    public void setSearchOptions(SearchOptions searchOptions) {
+        this.searchOptions = searchOptions;
+    }
 
-        // Add regular movement actions
-        if (neighbors != null) {
-            State up = new State(state.x - 1, state.y);
-            if (neighbors.containsKey(up) && neighbors.get(up) > 0) {
-                actions.add(Action.UP);
-            }
+    /**
+     * Number and placement of the landmarks behind GR3/AS3. Discards tables
+     * built with the previous settings.
+     */
+    public synchronized void setLandmarkOptions(int count, LandmarkHeuristic.Selection selection) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Landmark count must be positive: " + count);
+        }
+        this.landmarkCount = count;
+        this.landmarkSelection = selection;
+        this.h3 = null;
+    }
 
-            State down = new State(state.x + 1, state.y);
-            if (neighbors.containsKey(down) && neighbors.get(down) > 0) {
-                actions.add(Action.DOWN);
+    /**
+     * The landmark heuristic, preprocessing the grid on the first call.
+     */
+    public synchronized LandmarkHeuristic getLandmarkHeuristic() {
+        refresh();
+        if (h3 == null) {
+            String kind = "landmarks-" + landmarkCount + "-" + landmarkSelection;
+            h3 = loadArtifact(kind, in -> LandmarkHeuristic.read(in, this, landmarkSelection));
+            if (h3 == null) {
+                h3 = new LandmarkHeuristic(this, landmarkCount, landmarkSelection, 0L);
+                saveArtifact(kind, h3::write);
             }
+        }
+        return h3;
+    }
 
-            State left = new State(state.x, state.y - 1);
-            if (neighbors.containsKey(left) && neighbors.get(left) > 0) {
-                actions.add(Action.LEFT);
-            }
+    /**
+     * Start, goal and goal-bound heuristics of one search. The grid itself
+     * keeps no per-search state, so queries may be built and searched from
+     * several threads at once.
+     */
+    public DeliveryQuery query(State start, State goal) {
+        refresh();
+        return new DeliveryQuery(this, start, goal, h1, h2, h4, tunnels);
+    }
 
-            State right = new State(state.x, state.y + 1);
-            if (neighbors.containsKey(right) && neighbors.get(right) > 0) {
-                actions.add(Action.RIGHT);
+    @Override
+    public List<Action> actions(State state) {
+        List<Action> actions = new ArrayList<>();
+
+        // Add regular movement actions (UP, DOWN, LEFT, RIGHT) whose road is open
+        if (inGrid(state)) {
+            int index = indexOf(state);
+            for (int d = 0; d < 4; d++) {
+                if (traffic.traffic(index, d) > 0) {
+                    actions.add(MOVES[d]);
+                }
             }
         }
 
         // Add tunnel action ONLY if at tunnel entrance
-        for (Tunnel tunnel : tunnels) {
-            if (tunnel.isEntrance(state)) {
-                actions.add(Action.TUNNEL);
-                break;
-            }
+        if (inGrid(state) && tunnelIndex.count(indexOf(state)) > 0) {
+            actions.add(Action.TUNNEL);
         }
 
         return actions;
@@ -105,11 +222,10 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
             case RIGHT:
                 return new State(state.x, state.y + 1);
             case TUNNEL:
-                for (Tunnel tunnel : tunnels) {
-                    State otherEnd = tunnel.getOtherEnd(state);
-                    if (otherEnd != null) {
-                        return otherEnd;
-                    }
+                // The action alone cannot tell tunnels apart: take the first one (see cells)
+                int exit = inGrid(state) ? tunnelIndex.firstExit(indexOf(state)) : -1;
+                if (exit >= 0) {
+                    return stateAt(exit);
                 }
                 throw new IllegalStateException("No tunnel found for state: " + state);
             default:
@@ -123,15 +239,120 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
             return Math.abs(nextState.x - state.x) + Math.abs(nextState.y - state.y);
         }
         
-        Map<State, Integer> neighbors = edgeTraffic.get(state);
-        if (neighbors != null) {
-            Integer trafficLevel = neighbors.get(nextState);
-            if (trafficLevel != null && trafficLevel > 0) {
-                return trafficLevel;
+        int trafficLevel = traffic.traffic(state, nextState);
+        return trafficLevel > 0 ? trafficLevel : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * One pass over the traffic grid and tunnel index: same order and costs
+     * as actions/result/stepCost, without the action list or the probe
+     * states. Every tunnel at the state is its own TUNNEL successor.
+     */
+    @Override
+    public void forEachSuccessor(State state, TransitionVisitor<State, Action> visitor) {
+        if (!inGrid(state)) return;
+        int index = indexOf(state);
+        for (int d = 0; d < 4; d++) {
+            int level = traffic.traffic(index, d);
+            if (level > 0) {
+                visitor.visit(MOVES[d], new State(state.x + DX[d], state.y + DY[d]), level);
             }
         }
-        
-        return Double.POSITIVE_INFINITY;
+        for (int i = 0, count = tunnelIndex.count(index); i < count; i++) {
+            State other = stateAt(tunnelIndex.exit(index, i));
+            visitor.visit(Action.TUNNEL, other, Math.abs(other.x - state.x) + Math.abs(other.y - state.y));
+        }
+    }
+
+    @Override
+    public void forEachSuccessor(int index, IndexedTransitionVisitor<Action> visitor) {
+        for (int d = 0; d < 4; d++) {
+            int level = traffic.traffic(index, d);
+            if (level > 0) {
+                visitor.visit(MOVES[d], layout.adjacent(index, d), level);
+            }
+        }
+        int count = tunnelIndex.count(index);
+        if (count == 0) return;
+        int x = layout.x(index);
+        int y = layout.y(index);
+        for (int i = 0; i < count; i++) {
+            int exit = tunnelIndex.exit(index, i);
+            visitor.visit(Action.TUNNEL, exit, Math.abs(layout.x(exit) - x) + Math.abs(layout.y(exit) - y));
+        }
+    }
+
+    @Override
+    public int integerStepCostBound() {
+        return maxStepCost;
+    }
+
+    // ------------------ BACKWARD SEARCH ------------------
+
+    /**
+     * Edges are directed and traffic can differ per direction, so the
+     * predecessors of v are read from the neighbours' outgoing roads.
+     * Tunnels are symmetric, so the tunnel predecessors of v are its exits.
+     */
+    @Override
+    public void forEachPredecessor(int index, IndexedTransitionVisitor<Action> visitor) {
+        for (int d = 0; d < 4; d++) {
+            int level = traffic.reverseTraffic(index, d);
+            if (level > 0) {
+                // The neighbour in direction d reaches v by moving the opposite way
+                visitor.visit(MOVES[d ^ 1], layout.adjacent(index, d), level);
+            }
+        }
+
+        int count = tunnelIndex.count(index);
+        if (count == 0) return;
+        int x = layout.x(index);
+        int y = layout.y(index);
+        for (int i = 0; i < count; i++) {
+            int other = tunnelIndex.exit(index, i);
+            visitor.visit(Action.TUNNEL, other,
+                    Math.abs(layout.x(other) - x) + Math.abs(layout.y(other) - y));
+        }
+    }
+
+    private boolean inGrid(State s) {
+        return s.x >= 0 && s.x < m && s.y >= 0 && s.y < n;
+    }
+
+    /**
+     * Both heuristics are symmetric lower bounds, so H1 (number 1) or H2
+     * (over reversed roads) pointed at the start bounds the remaining cost
+     * of a backward search; null for other heuristics.
+     */
+    Heuristic<State> reverseHeuristic(int number, State start) {
+        if (number == 1 && h1 instanceof ManhattanHeuristic) {
+            return ((ManhattanHeuristic) h1).forGoal(start, tunnels);
+        }
+        if (number == 2 && h2Reverse != null) {
+            return h2Reverse.forGoal(start, tunnels);
+        }
+        return null;
+    }
+
+    // ------------------ STATE INDEXING ------------------
+
+    /**
+     * Cells are numbered by the traffic grid's CellLayout: row-major
+     * (x * n + y) unless built by withCellOrder.
+     */
+    @Override
+    public int stateCount() {
+        return m * n;
+    }
+
+    @Override
+    public int indexOf(State state) {
+        return layout.id(state.x, state.y);
+    }
+
+    @Override
+    public State stateAt(int index) {
+        return new State(layout.x(index), layout.y(index));
     }
 
     // ------------------ GRID VISUALIZATION ------------------
@@ -231,8 +452,8 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
     /**
      * Visualize step-by-step path execution
      */
-    private void visualizePathExecution(State startPos, List<Action> actions, int truckIdx, int customerIdx) {
-        State current = startPos;
+    private void visualizePathExecution(List<State> cells, List<Action> actions, int truckIdx, int customerIdx) {
+        State current = cells.get(0);
         List<State> allTruckPositions = new ArrayList<>(trucks);
         
         System.out.println("\n" + "▼".repeat(60));
@@ -252,7 +473,7 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
         // Execute each action
         for (int i = 0; i < actions.size(); i++) {
             Action action = actions.get(i);
-            current = result(current, action);
+            current = cells.get(i + 1);
             allTruckPositions.set(truckIdx, current);
             
             System.out.println("\nStep " + (i + 1) + ": Action = " + action);
@@ -270,32 +491,420 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
         System.out.println("▲".repeat(60) + "\n");
     }
 
+    /**
+     * The contraction hierarchy behind the CH strategy, preprocessing the
+     * grid on the first call and again after the traffic changes.
+     */
+    public synchronized ContractionHierarchy<State, Action> getContractionHierarchy() {
+        refresh();
+        if (contractionHierarchy == null) {
+            contractionHierarchy = new ContractionHierarchy<>(this);
+        }
+        return contractionHierarchy;
+    }
+
+    /**
+     * All-pairs distance tables, built on the first call. Throws
+     * IllegalStateException if the grid is too large for the heap.
+     */
+    public synchronized DistanceOracle<State, Action> getDistanceOracle() {
+        refresh();
+        if (distanceOracle == null) {
+            distanceOracle = loadArtifact("apsp", in -> DistanceOracle.read(in, this));
+            if (distanceOracle == null) {
+                distanceOracle = new DistanceOracle<>(this);
+                saveArtifact("apsp", distanceOracle::write);
+            }
+        }
+        return distanceOracle;
+    }
+
+    /**
+     * Strongly connected components of the traffic + tunnel graph, computed
+     * on the first call.
+     */
+    public synchronized StronglyConnectedComponents getComponents() {
+        refresh();
+        if (components == null) {
+            components = loadArtifact("scc", in -> StronglyConnectedComponents.read(in, stateCount()));
+            if (components == null) {
+                components = new StronglyConnectedComponents(this);
+                saveArtifact("scc", components::write);
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Load landmark tables, SCC ids and distance matrices from store (and
+     * save them there once computed) under the given input key; see
+     * ArtifactStore.key. fromStrings does this when the delivery.artifacts
+     * system property names a directory. Already built structures are kept.
+     */
+    public synchronized void setArtifactStore(ArtifactStore store, String key) {
+        this.artifacts = store;
+        this.artifactKey = key;
+    }
+
+    private <T> T loadArtifact(String kind, ArtifactStore.Decoder<T> decoder) {
+        return artifacts == null ? null : artifacts.read(artifactKey, orderedKind(kind), decoder);
+    }
+
+    private void saveArtifact(String kind, ArtifactStore.Encoder encoder) {
+        if (artifacts != null) {
+            artifacts.write(artifactKey, orderedKind(kind), encoder);
+        }
+    }
+
+    /**
+     * Artifacts hold state ids, so grids in another cell order keep their own.
+     */
+    private String orderedKind(String kind) {
+        return layout.order == CellOrder.ROW_MAJOR ? kind : kind + "-" + layout.order;
+    }
+
+    public CellOrder getCellOrder() {
+        return layout.order;
+    }
+
+    /**
+     * The same problem with cells (state ids and every array indexed by
+     * them) numbered in the given order. Preprocessing is not shared; the
+     * artifact store is, under order-specific kinds. Heuristics are rebuilt
+     * with the defaults of fromStrings.
+     */
+    public DeliverySearch withCellOrder(CellOrder order) {
+        TrafficGrid ordered = traffic.withOrder(order);
+        DeliverySearch ds = new DeliverySearch(ordered, tunnels, stores, customers, trucks,
+                new ManhattanHeuristic(), new TrafficAwareHeuristic(TrafficBounds.of(ordered, false)));
+        ds.setSearchOptions(searchOptions);
+        synchronized (this) {
+            ds.setArtifactStore(artifacts, artifactKey);
+            ds.setLandmarkOptions(landmarkCount, landmarkSelection);
+            ds.setClusterSize(clusterSize);
+        }
+        return ds;
+    }
+
+    /**
+     * Component id of a cell (see getComponents), or -1 outside the grid.
+     */
+    public int componentOf(State s) {
+        return inGrid(s) ? getComponents().componentOf(indexOf(s)) : -1;
+    }
+
+    /**
+     * False when no path from a to b exists; answered in O(1) without
+     * searching. Cells outside the grid are never reachable.
+     */
+    public boolean canReach(State a, State b) {
+        return inGrid(a) && inGrid(b) && getComponents().canReach(indexOf(a), indexOf(b));
+    }
+
+    /**
+     * Cluster side length for HPA. Discards an abstraction built with the
+     * previous size.
+     */
+    public synchronized void setClusterSize(int clusterSize) {
+        if (clusterSize < 1) {
+            throw new IllegalArgumentException("Cluster size must be positive: " + clusterSize);
+        }
+        this.clusterSize = clusterSize;
+        this.hierarchicalPlanner = null;
+    }
+
+    /**
+     * The cluster abstraction behind the HPA strategy, built on first call.
+     */
+    public synchronized HierarchicalPlanner getHierarchicalPlanner() {
+        refresh();
+        if (hierarchicalPlanner == null) {
+            hierarchicalPlanner = new HierarchicalPlanner(this, clusterSize);
+        }
+        return hierarchicalPlanner;
+    }
+
+    public TrafficGrid getTrafficGrid() {
+        return traffic;
+    }
+
+    public TunnelIndex getTunnelIndex() {
+        return tunnelIndex;
+    }
+
     // ------------------ PATHFINDING ------------------
 
     public GenericSearch.SearchResult<State, Action> path(State store, State customer, Strategy strategy) {
-        setPath(store, customer);
-        return GenericSearch.search(this, strategy, h1, h2);
+        return path(store, customer, strategy, searchOptions);
+    }
+
+    /**
+     * Same with explicit options, e.g. searchOptions.withCostOnly(true) when
+     * only the cost is needed.
+     */
+    public GenericSearch.SearchResult<State, Action> path(State store, State customer, Strategy strategy,
+                                                          SearchOptions options) {
+        return search(query(store, customer), strategy, options);
     }
 
     public static String path(DeliverySearch ds, State start, State goal, Strategy strategy) {
-        ds.setPath(start, goal);
-        GenericSearch.SearchResult<State, Action> result = 
-                GenericSearch.search(ds, strategy, ds.h1, ds.h2);
+        GenericSearch.SearchResult<State, Action> result = ds.path(start, goal, strategy);
 
         if (result.cost == Double.POSITIVE_INFINITY) {
             return "no path;0;0";
         }
 
-        String actions = result.actions.stream()
-                .map(Action::toString)
-                .collect(Collectors.joining(","));
+        String actions = ds.formatActions(start, goal, result);
         
         return actions + ";" + (int) result.cost + ";" + result.nodesExpanded;
     }
 
+    /**
+     * Actions of a path joined by commas. A TUNNEL taken at a cell with
+     * several tunnels is written with its exit (Action.tunnelTo), so the
+     * route replays to the cells the search went through.
+     */
+    private String formatActions(State start, State goal, GenericSearch.SearchResult<State, Action> result) {
+        if (!result.actions.contains(Action.TUNNEL)) {
+            return result.actions.stream().map(Action::toString).collect(Collectors.joining(","));
+        }
+        List<State> cells = cells(start, goal, result);
+        StringJoiner joined = new StringJoiner(",");
+        for (int i = 0; i < result.actions.size(); i++) {
+            Action action = result.actions.get(i);
+            boolean shared = action == Action.TUNNEL && tunnelIndex.count(indexOf(cells.get(i))) > 1;
+            joined.add(shared ? Action.tunnelTo(cells.get(i + 1)) : action.toString());
+        }
+        return joined.toString();
+    }
+
+    /**
+     * The cells a finite-cost path visits, start first and goal last. A
+     * TUNNEL at a cell with several tunnels does not say which one it took,
+     * so every exit is followed and a walk that ends at goal at exactly the
+     * path's cost is kept; any such walk is a route through the same actions
+     * at the same cost.
+     *
+     * @throws IllegalStateException if the actions do not lead from start to goal
+     */
+    public List<State> cells(State start, State goal, GenericSearch.SearchResult<State, Action> result) {
+        List<Walk> layer = new ArrayList<>();
+        layer.add(new Walk(indexOf(start), 0, null));
+        for (Action action : result.actions) {
+            Set<Walk> next = new LinkedHashSet<>();
+            for (Walk walk : layer) {
+                forEachSuccessor(walk.cell, (a, child, cost) -> {
+                    // Costs only grow, so walks already above the path's cost are dropped
+                    if (a == action && walk.cost + cost <= result.cost) {
+                        next.add(new Walk(child, walk.cost + cost, walk));
+                    }
+                });
+            }
+            layer = new ArrayList<>(next);
+        }
+        int target = indexOf(goal);
+        for (Walk walk : layer) {
+            if (walk.cell == target && walk.cost == result.cost) {
+                LinkedList<State> cells = new LinkedList<>();
+                for (Walk w = walk; w != null; w = w.previous) {
+                    cells.addFirst(stateAt(w.cell));
+                }
+                return new ArrayList<>(cells);
+            }
+        }
+        throw new IllegalStateException("Actions " + result.actions + " do not lead from " + start + " to "
+                + goal + " at cost " + result.cost);
+    }
+
+    /**
+     * A walk of cells; equal walks end in the same cell at the same cost.
+     */
+    private static final class Walk {
+        final int cell;
+        final double cost;
+        final Walk previous;
+
+        Walk(int cell, double cost, Walk previous) {
+            this.cell = cell;
+            this.cost = cost;
+            this.previous = previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Walk && ((Walk) o).cell == cell && ((Walk) o).cost == cost;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * cell + Double.hashCode(cost);
+        }
+    }
+
+    /**
+     * The strategy's own result from one cell to another, from the path
+     * cache when this graph version already searched it. A cost-optimal
+     * result also fills the EXACT cost entry of the pair.
+     */
+    public GenericSearch.SearchResult<State, Action> cachedPath(State from, State to, Strategy strategy) {
+        if (!inGrid(from) || !inGrid(to)) {
+            return path(from, to, strategy);
+        }
+        PathCache cache = getPathCache();
+        long version = traffic.getVersion();
+        long key = PathCache.key(indexOf(from), indexOf(to), PathCache.routeClass(strategy));
+        GenericSearch.SearchResult<State, Action> result = cache.get(key, version);
+        return result != null ? result : searchAndCache(cache, version, from, to, strategy, searchOptions);
+    }
+
+    /**
+     * Search with the given options and cache the result: as the route
+     * unless cost-only, as the EXACT cost if the strategy is cost-optimal.
+     * Results cut off by a cost bound are not cached.
+     */
+    private GenericSearch.SearchResult<State, Action> searchAndCache(PathCache cache, long version,
+                                                                     State from, State to, Strategy strategy,
+                                                                     SearchOptions options) {
+        GenericSearch.SearchResult<State, Action> result = path(from, to, strategy, options);
+        if (result.boundExceeded) {
+            return result;
+        }
+        int a = indexOf(from);
+        int b = indexOf(to);
+        if (!options.costOnly) {
+            result = cache.put(PathCache.key(a, b, PathCache.routeClass(strategy)), version, result);
+        }
+        if (strategy.isCostOptimal()) {
+            result = cache.put(PathCache.key(a, b, PathCache.EXACT), version, result);
+        }
+        return result;
+    }
+
+    /**
+     * A result whose cost is the strategy's cost from one cell to another,
+     * from the path cache if possible: for cost-optimal strategies any
+     * exact search of the pair counts. With costOnly a miss runs a
+     * cost-only search (the result has no actions); otherwise it caches the
+     * route like cachedPath.
+     */
+    public GenericSearch.SearchResult<State, Action> cachedCost(State from, State to, Strategy strategy,
+                                                                boolean costOnly) {
+        return cachedCost(from, to, strategy, costOnly, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Same, but a search that misses the cache gives up once the cost
+     * must exceed costBound (see SearchOptions.costBound); such results
+     * have boundExceeded set and are not cached.
+     */
+    public GenericSearch.SearchResult<State, Action> cachedCost(State from, State to, Strategy strategy,
+                                                                boolean costOnly, double costBound) {
+        SearchOptions options = searchOptions.withCostOnly(costOnly).withCostBound(costBound);
+        if (!inGrid(from) || !inGrid(to)) {
+            return path(from, to, strategy, options);
+        }
+        PathCache cache = getPathCache();
+        long version = traffic.getVersion();
+        long key = PathCache.key(indexOf(from), indexOf(to), PathCache.costClass(strategy));
+        GenericSearch.SearchResult<State, Action> result = cache.get(key, version);
+        return result != null ? result : searchAndCache(cache, version, from, to, strategy, options);
+    }
+
+    /**
+     * Admissible lower bound on the cost from each of froms to to, without
+     * searching: the portal-graph bound of H4, or infinity where the
+     * strongly connected components rule a path out.
+     */
+    public double[] lowerBounds(List<State> froms, State to) {
+        double[] bounds = new double[froms.size()];
+        Arrays.fill(bounds, Double.POSITIVE_INFINITY);
+        if (!inGrid(to)) {
+            return bounds;
+        }
+        refresh();
+        Heuristic<State> bound = h4.forGoal(to, tunnels);
+        for (int i = 0; i < bounds.length; i++) {
+            if (canReach(froms.get(i), to)) {
+                bounds[i] = bound.h(froms.get(i));
+            }
+        }
+        return bounds;
+    }
+
+    public synchronized PathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Use another cache, e.g. one bounded differently. A cache must only be
+     * shared between planners of this grid: keys are state ids.
+     */
+    public synchronized void setPathCache(PathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    /**
+     * Costs from source to every target (reverse = false) or from every
+     * target to source (reverse = true) with a single Dijkstra that stops
+     * once all reachable targets are settled. keepParents keeps the search
+     * tree so OneToManySearch.path can rebuild each route.
+     */
+    public OneToManySearch<State, Action> oneToMany(State source, List<State> targets,
+                                                    boolean reverse, boolean keepParents) {
+        if (!inGrid(source) || !targets.stream().allMatch(this::inGrid)) {
+            throw new IllegalArgumentException("One-to-many endpoints must lie in the " + m + "x" + n + " grid");
+        }
+        return new OneToManySearch<>(this, source, targets, reverse, keepParents, getComponents());
+    }
+
+    /**
+     * Run a strategy on one query.
+     */
+    private GenericSearch.SearchResult<State, Action> search(DeliveryQuery query, Strategy strategy,
+                                                            SearchOptions options) {
+        State start = query.start;
+        State goal = query.goal;
+        // Off-grid endpoints have no cell id; unreachable customers would otherwise exhaust the reachable grid
+        if (!inGrid(start) || !inGrid(goal) || !getComponents().canReach(indexOf(start), indexOf(goal))) {
+            return new GenericSearch.SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, 0);
+        }
+        if (strategy == Strategy.CH) {
+            return getContractionHierarchy().query(start, goal);
+        }
+        if (strategy == Strategy.HPA) {
+            return getHierarchicalPlanner().query(start, goal).toSearchResult();
+        }
+        if (strategy == Strategy.APSP) {
+            return getDistanceOracle().query(start, goal);
+        }
+        // Bind only the heuristic the strategy uses
+        int number = strategy.heuristic;
+        return GenericSearch.search(query, strategy, options,
+                number == 1 ? query.getH1() : null,
+                number == 2 ? query.getH2() : null,
+                number == 3 ? getLandmarkHeuristic().forGoal(goal, tunnels) : null,
+                number == 4 ? query.getH4() : null);
+    }
+
     // ------------------ PARSING ------------------
 
     public static DeliverySearch fromStrings(String initialState, String trafficStr) {
+        return fromStrings(initialState, trafficStr, ArtifactStore.configured());
+    }
+
+    /**
+     * Parse a grid; preprocessing is cached in artifacts (may be null) under
+     * the hash of both strings.
+     */
+    public static DeliverySearch fromStrings(String initialState, String trafficStr, ArtifactStore artifacts) {
+        DeliverySearch ds = parse(initialState, trafficStr);
+        if (artifacts != null) {
+            ds.setArtifactStore(artifacts, ArtifactStore.key(initialState, trafficStr));
+        }
+        return ds;
+    }
+
+    private static DeliverySearch parse(String initialState, String trafficStr) {
         String[] parts = initialState.split(";");
 
         int m = Integer.parseInt(parts[0]);
@@ -342,8 +951,8 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
             }
         }
 
-        // Parse traffic information
-        Map<State, Map<State, Integer>> edgeTraffic = new HashMap<>();
+        // Parse traffic information straight into the dense grid
+        TrafficGrid traffic = new TrafficGrid(m, n);
         for (String edge : trafficStr.split(";")) {
             String[] e = edge.split(",");
             if (e.length < 5) continue;
@@ -352,22 +961,25 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
             State to = new State(Integer.parseInt(e[2]), Integer.parseInt(e[3]));
             int cost = Integer.parseInt(e[4]);
 
-            if (cost == 0) continue;
+            if (cost <= 0) continue;
 
-            edgeTraffic.putIfAbsent(from, new HashMap<>());
-            edgeTraffic.get(from).put(to, cost);
+            traffic.set(from, to, cost);
         }
 
         List<State> trucks = new ArrayList<>(stores);
 
-        return new DeliverySearch(m, n, edgeTraffic, tunnels, stores, customers, trucks,
-                new ManhattanHeuristic(), new TrafficAwareHeuristic(1));
+        // H2 is calibrated on the parsed traffic: cheapest road per direction
+        return new DeliverySearch(traffic, tunnels, stores, customers, trucks,
+                new ManhattanHeuristic(), new TrafficAwareHeuristic(TrafficBounds.of(traffic, false)));
     }
 
     // ------------------ PLANNING ------------------
 
     public String plan(Strategy strategy, boolean visualize) {
         DeliveryPlanner planner = new DeliveryPlanner(stores, customers, trucks, this, strategy);
+        if (strategy == Strategy.APSP) {
+            planner.setCostSource(DeliveryPlanner.CostSource.ORACLE);
+        }
         List<int[]> assignments = planner.assign();
 
         StringBuilder sb = new StringBuilder();
@@ -384,10 +996,8 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
             State startPos = currentTruckPositions.get(truckIdx);
             State goalPos = customers.get(customerIdx);
 
-            // Get path
-            setPath(startPos, goalPos);
-            GenericSearch.SearchResult<State, Action> result = 
-                    GenericSearch.search(this, strategy, h1, h2);
+            // Reuses the search behind the cost matrix when it kept its path
+            GenericSearch.SearchResult<State, Action> result = planner.route(startPos, goalPos);
 
             if (result.cost == Double.POSITIVE_INFINITY) {
                 System.err.println("Warning: No path found from Store" + truckIdx + 
@@ -395,9 +1005,7 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
                 continue;
             }
 
-            String deliveryPath = result.actions.stream()
-                    .map(Action::toString)
-                    .collect(Collectors.joining(","));
+            String deliveryPath = formatActions(startPos, goalPos, result);
             int deliveryCost = (int) result.cost;
             int deliveryNodes = result.nodesExpanded;
 
@@ -410,7 +1018,7 @@ public class DeliverySearch extends GenericSearch implements Problem<State, Acti
 
             if (visualize) {
                 // Show step-by-step grid visualization
-                visualizePathExecution(startPos, result.actions, truckIdx, customerIdx);
+                visualizePathExecution(cells(startPos, goalPos, result), result.actions, truckIdx, customerIdx);
             }
 
             // Update truck position after delivery
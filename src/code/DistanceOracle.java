@@ -0,0 +1,411 @@
+package code;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * All-pairs shortest paths over an {@link IndexedGraph}, for small
+ * and medium grids queried many times: after a one-time build every cost is
+ * an O(1) array read and every path is read hop by hop from a next-hop table.
+ *
+ * PREPROCESSING: the graph is copied into CSR arrays, then one Dijkstra per
+ * source state (over a bucket queue) fills that source's row. Sources are spread over worker
+ * threads; each worker has its own heap and scratch arrays and writes only
+ * its own rows.
+ *
+ * STORAGE (per source row):
+ * - distances as 16-bit values (char, 0xFFFF = unreachable) when the row's
+ *   largest finite cost fits, otherwise as ints
+ * - the first hop towards every target as the edge's position in the
+ *   source's successor list (byte, 0xFF = none), so states may have at most
+ *   254 successors
+ *
+ * Following first hops yields a shortest path because every state on it
+ * stores the first hop of its own shortest path to the same target.
+ *
+ * Memory grows with the square of the state count; the constructor checks
+ * {@link #estimateBytes} against the free heap (with 32-bit rows unless a
+ * bound on path costs proves 16 bits enough) and refuses to build if it
+ * does not fit. Step costs must be integers.
+ */
+public final class DistanceOracle<S, A> {
+
+    public static final int INF = Integer.MAX_VALUE;
+
+    private static final char NARROW_INF = 0xFFFF;
+    private static final int NO_HOP = 0xFF;
+
+    private final IndexedGraph<S, A> problem;
+    private final int count;
+
+    // Graph (CSR): edges offsets[v] .. offsets[v + 1] - 1 leave v
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] costs;
+    private final Object[] actions;
+    private final int maxEdgeCost;
+
+    // Per source row: exactly one of narrow[s] / wide[s] is set
+    private final char[][] narrow;
+    private final int[][] wide;
+    private final byte[][] nextHop;
+
+    private final int threads;
+    private final long preprocessingNanos;
+
+    public DistanceOracle(IndexedGraph<S, A> problem) {
+        this(problem, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Build the tables with the given number of worker threads.
+     *
+     * @throws IllegalArgumentException if step costs are not integers or a
+     *         state has more successors than a next-hop byte can name
+     * @throws IllegalStateException if the tables would not fit in the heap
+     */
+    public DistanceOracle(IndexedGraph<S, A> problem, int threads) {
+        this(problem, threads, true);
+    }
+
+    /**
+     * Copies the graph and checks memory; fills the rows only if asked (read
+     * fills them from an artifact instead).
+     */
+    private DistanceOracle(IndexedGraph<S, A> problem, int threads, boolean fill) {
+        if (problem.integerStepCostBound() < 0) {
+            throw new IllegalArgumentException("Distance oracle needs integer step costs");
+        }
+        this.problem = problem;
+        this.count = problem.stateCount();
+
+        long startTime = System.nanoTime();
+
+        Edges<A> edges = new Edges<>(4 * count);
+        this.offsets = new int[count + 1];
+        for (int v = 0; v < count; v++) {
+            offsets[v] = edges.size;
+            problem.forEachSuccessor(v, edges);
+            if (edges.size - offsets[v] >= NO_HOP) {
+                throw new IllegalArgumentException("State " + problem.stateAt(v) + " has "
+                        + (edges.size - offsets[v]) + " successors; the next-hop table allows "
+                        + (NO_HOP - 1));
+            }
+        }
+        offsets[count] = edges.size;
+        this.targets = Arrays.copyOf(edges.targets, edges.size);
+        this.costs = Arrays.copyOf(edges.costs, edges.size);
+        this.actions = Arrays.copyOf(edges.actions, edges.size);
+
+        // A shortest path leaves every state at most once, so the sum of the
+        // largest out-edge costs bounds every distance; below 0xFFFF all
+        // rows are 16-bit.
+        long longest = 0;
+        int maxCost = 0;
+        for (int v = 0; v < count; v++) {
+            int largest = 0;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                largest = Math.max(largest, costs[e]);
+            }
+            longest += largest;
+            maxCost = Math.max(maxCost, largest);
+        }
+        this.maxEdgeCost = maxCost;
+        long needed = estimateBytes(count, longest >= NARROW_INF);
+        long available = availableBytes();
+        if (needed > available) {
+            throw new IllegalStateException("Distance oracle for " + count + " states needs about "
+                    + (needed >> 20) + " MB, only " + (available >> 20) + " MB available");
+        }
+
+        this.narrow = new char[count][];
+        this.wide = new int[count][];
+        this.nextHop = new byte[count][];
+        this.threads = Math.max(1, Math.min(threads, count / 64 + 1));
+        if (fill) {
+            fillRows();
+        }
+
+        this.preprocessingNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Bytes needed by the tables of a graph with the given state count:
+     * a distance row (2 or 4 bytes per entry) plus a next-hop row per source.
+     */
+    public static long estimateBytes(int states, boolean wideRows) {
+        long rowBytes = (long) states * (wideRows ? 4 : 2) + 16   // distances + array header
+                + (long) states + 16;                              // next hops + array header
+        return states * rowBytes + 16L * states;
+    }
+
+    /**
+     * Heap that can still be allocated: the maximum heap minus what is in use.
+     */
+    public static long availableBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Whether tables for a graph with the given state count fit in the heap
+     * now, assuming 16-bit rows.
+     */
+    public static boolean fits(int states) {
+        return estimateBytes(states, false) <= availableBytes();
+    }
+
+    private void fillRows() {
+        AtomicInteger nextSource = new AtomicInteger();
+        if (threads == 1) {
+            new RowBuilder(nextSource).call();
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "distance-oracle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<RowBuilder> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(new RowBuilder(nextSource));
+            }
+            for (Future<Void> done : pool.invokeAll(workers)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Distance oracle build interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Distance oracle build failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One worker: takes sources from a shared counter and runs Dijkstra from
+     * each with its own bucket queue and scratch arrays. Step costs are
+     * small integers, so the queue is Dial's circular buckets (as in UCB):
+     * entries made stale by an improvement are skipped when popped.
+     */
+    private final class RowBuilder implements Callable<Void> {
+        final AtomicInteger nextSource;
+        final int[][] buckets = new int[maxEdgeCost + 1][16];
+        final int[] sizes = new int[maxEdgeCost + 1];
+        final int[] dist = new int[count];
+        final byte[] hop = new byte[count];
+
+        RowBuilder(AtomicInteger nextSource) {
+            this.nextSource = nextSource;
+        }
+
+        @Override
+        public Void call() {
+            for (int source = nextSource.getAndIncrement(); source < count; source = nextSource.getAndIncrement()) {
+                fill(source);
+            }
+            return null;
+        }
+
+        private void push(int id, int key) {
+            int b = key % buckets.length;
+            if (sizes[b] == buckets[b].length) {
+                buckets[b] = Arrays.copyOf(buckets[b], sizes[b] * 2);
+            }
+            buckets[b][sizes[b]++] = id;
+        }
+
+        private void fill(int source) {
+            Arrays.fill(dist, INF);
+            Arrays.fill(hop, (byte) NO_HOP);
+            dist[source] = 0;
+            push(source, 0);
+            int queued = 1;
+            int cost = 0;   // key of the bucket being drained
+            int largest = 0;
+            while (queued > 0) {
+                int b = cost % buckets.length;
+                if (sizes[b] == 0) {
+                    cost++;
+                    continue;
+                }
+                int v = buckets[b][--sizes[b]];
+                queued--;
+                if (dist[v] != cost) continue;   // stale entry
+                largest = cost;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    int d = cost + costs[e];
+                    if (d < dist[w]) {
+                        dist[w] = d;
+                        // The first hop is inherited from v, or is e itself at the source
+                        hop[w] = v == source ? (byte) (e - offsets[source]) : hop[v];
+                        push(w, d);
+                        queued++;
+                    }
+                }
+            }
+
+            if (largest < NARROW_INF) {
+                char[] row = new char[count];
+                for (int t = 0; t < count; t++) {
+                    row[t] = dist[t] == INF ? NARROW_INF : (char) dist[t];
+                }
+                narrow[source] = row;
+            } else {
+                wide[source] = dist.clone();
+            }
+            nextHop[source] = hop.clone();
+        }
+    }
+
+    /**
+     * Shortest-path cost between two state ids, or INF if unreachable.
+     */
+    public int distance(int from, int to) {
+        char[] row = narrow[from];
+        if (row != null) {
+            return row[to] == NARROW_INF ? INF : row[to];
+        }
+        return wide[from][to];
+    }
+
+    /**
+     * Shortest-path cost between two states, POSITIVE_INFINITY if unreachable.
+     */
+    public double cost(S from, S to) {
+        int d = distance(problem.indexOf(from), problem.indexOf(to));
+        return d == INF ? Double.POSITIVE_INFINITY : d;
+    }
+
+    /**
+     * Shortest path read from the next-hop tables. nodesExpanded counts the
+     * states visited along the path (no search runs).
+     */
+    @SuppressWarnings("unchecked")
+    public GenericSearch.SearchResult<S, A> query(S from, S to) {
+        int source = problem.indexOf(from);
+        int target = problem.indexOf(to);
+        int d = distance(source, target);
+        if (d == INF) {
+            return new GenericSearch.SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, 0);
+        }
+        List<A> path = new ArrayList<>();
+        int v = source;
+        while (v != target) {
+            int e = offsets[v] + (nextHop[v][target] & 0xFF);
+            path.add((A) actions[e]);
+            v = targets[e];
+        }
+        return new GenericSearch.SearchResult<>(path, d, path.size() + 1);
+    }
+
+    /**
+     * Artifact sections: one byte per row (2 = 16-bit, 4 = 32-bit), then the
+     * distance and next-hop rows of every source in order.
+     */
+    public void write(ArtifactStore.Writer out) throws IOException {
+        byte[] widths = new byte[count];
+        for (int s = 0; s < count; s++) {
+            widths[s] = (byte) (narrow[s] != null ? 2 : 4);
+        }
+        out.putBytes(widths);
+        for (int s = 0; s < count; s++) {
+            if (narrow[s] != null) {
+                out.putChars(narrow[s]);
+            } else {
+                out.putInts(wide[s]);
+            }
+            out.putBytes(nextHop[s]);
+        }
+    }
+
+    /**
+     * Tables written by {@link #write} for the same graph. The graph itself
+     * is copied again (cheap); throws IOException if the rows do not fit it.
+     */
+    public static <S, A> DistanceOracle<S, A> read(ArtifactStore.Reader in, IndexedGraph<S, A> problem)
+            throws IOException {
+        DistanceOracle<S, A> oracle = new DistanceOracle<>(problem, 1, false);
+        int count = oracle.count;
+        byte[] widths = in.bytes();
+        if (widths.length != count) {
+            throw new IOException("rows for " + widths.length + " states, expected " + count);
+        }
+        for (int s = 0; s < count; s++) {
+            int length;
+            if (widths[s] == 2) {
+                oracle.narrow[s] = in.chars();
+                length = oracle.narrow[s].length;
+            } else {
+                oracle.wide[s] = in.ints();
+                length = oracle.wide[s].length;
+            }
+            oracle.nextHop[s] = in.bytes();
+            if (length != count || oracle.nextHop[s].length != count) {
+                throw new IOException("row " + s + " has the wrong length");
+            }
+        }
+        return oracle;
+    }
+
+    /**
+     * Bytes held by the distance and next-hop rows.
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (int s = 0; s < count; s++) {
+            bytes += narrow[s] != null ? 2L * count : 4L * count;
+            bytes += count;
+        }
+        return bytes;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getPreprocessingMillis() {
+        return preprocessingNanos / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "DistanceOracle(" + count + " states, " + (memoryBytes() >> 10) + " KB, "
+                + threads + " threads, preprocessing=" + getPreprocessingMillis() + "ms)";
+    }
+
+    /**
+     * Growable CSR edge arrays, filled by forEachSuccessor.
+     */
+    private static final class Edges<A> implements IndexedTransitionVisitor<A> {
+        int[] targets;
+        int[] costs;
+        Object[] actions;
+        int size;
+
+        Edges(int capacity) {
+            capacity = Math.max(16, capacity);
+            this.targets = new int[capacity];
+            this.costs = new int[capacity];
+            this.actions = new Object[capacity];
+        }
+
+        @Override
+        public void visit(A action, int other, double cost) {
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
+                actions = Arrays.copyOf(actions, size * 2);
+            }
+            targets[size] = other;
+            costs[size] = (int) cost;
+            actions[size] = action;
+            size++;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.*;
  * - BFS/DFS: Check explored before adding to frontier (reduces redundancy)
  * - UCS/A*: Use bestCost map to avoid re-expanding with worse paths
  * - Greedy: Simple explored set (not optimal, but efficient)
+ * - IndexedProblem: BFS/UCS/A* run on primitive arrays (see IndexedSearch)
  * 
  * NOTE: This class contains only static methods and is extended for structure.
  */
@@ -29,11 +30,31 @@ public abstract class GenericSearch {
         public final List<Action> actions;
         public final double cost;
         public final int nodesExpanded;
+        public final int peakFrontier;   // largest frontier size seen during the search
+        public final int heuristicCalls; // number of Heuristic.h evaluations
+        public final boolean boundExceeded; // stopped by SearchOptions.costBound, no path returned
 
         public SearchResult(List<Action> actions, double cost, int nodesExpanded) {
+            this(actions, cost, nodesExpanded, 0);
+        }
+
+        public SearchResult(List<Action> actions, double cost, int nodesExpanded, int peakFrontier) {
+            this(actions, cost, nodesExpanded, peakFrontier, 0);
+        }
+
+        public SearchResult(List<Action> actions, double cost, int nodesExpanded, int peakFrontier,
+                            int heuristicCalls) {
+            this(actions, cost, nodesExpanded, peakFrontier, heuristicCalls, false);
+        }
+
+        public SearchResult(List<Action> actions, double cost, int nodesExpanded, int peakFrontier,
+                            int heuristicCalls, boolean boundExceeded) {
             this.actions = actions;
             this.cost = cost;
             this.nodesExpanded = nodesExpanded;
+            this.peakFrontier = peakFrontier;
+            this.heuristicCalls = heuristicCalls;
+            this.boundExceeded = boundExceeded;
         }
     }
 
@@ -51,6 +72,84 @@ public abstract class GenericSearch {
             Strategy strategy,
             Heuristic<S> h1,
             Heuristic<S> h2) {
+        return search(problem, strategy, h1, h2, SearchOptions.DEFAULT);
+    }
+
+    /**
+     * Same as {@link #search(Problem, Strategy, Heuristic, Heuristic)} with
+     * explicit tuning options (e.g. the frontier implementation).
+     */
+    public static <S, A> SearchResult<S, A> search(
+            Problem<S, A> problem,
+            Strategy strategy,
+            Heuristic<S> h1,
+            Heuristic<S> h2,
+            SearchOptions options) {
+        return search(problem, strategy, options, h1, h2);
+    }
+
+    /**
+     * General form: heuristics[i] is heuristic i + 1, and a strategy uses the
+     * one named by {@link Strategy#heuristic} (GR3/AS3 need three, GR4/AS4
+     * four; unused slots may be null).
+     *
+     * @throws IllegalArgumentException if the strategy's heuristic is missing
+     */
+    @SafeVarargs
+    public static <S, A> SearchResult<S, A> search(
+            Problem<S, A> problem,
+            Strategy strategy,
+            SearchOptions options,
+            Heuristic<S>... heuristics) {
+
+        Heuristic<S> h = null;
+        if (strategy.heuristic > 0) {
+            if (strategy.heuristic > heuristics.length || heuristics[strategy.heuristic - 1] == null) {
+                throw new IllegalArgumentException("No heuristic " + strategy.heuristic + " for " + strategy);
+            }
+            h = heuristics[strategy.heuristic - 1];
+        }
+
+        if (problem instanceof BidirectionalProblem) {
+            BidirectionalProblem<S, A> bidirectional = (BidirectionalProblem<S, A>) problem;
+            switch (strategy) {
+                case BUC:
+                case BAS1:
+                case BAS2:
+                    return BidirectionalSearch.search(bidirectional, h, options);
+                default:
+                    break;
+            }
+        }
+
+        if (problem instanceof IndexedProblem) {
+            IndexedProblem<S, A> indexed = (IndexedProblem<S, A>) problem;
+            switch (strategy) {
+                case BF:
+                    return IndexedSearch.breadthFirst(indexed);
+                case DF:
+                    return IndexedSearch.depthFirst(indexed);
+                case ID:
+                    return IndexedSearch.iterativeDeepening(indexed);
+                case IDA1:
+                case IDA2:
+                    return IndexedSearch.idaStar(indexed, h);
+                case UC:
+                case BUC:
+                    return IndexedSearch.uniformCost(indexed, options);
+                case UCB:
+                    return IndexedSearch.bucketUniformCost(indexed, options);
+                case AS1:
+                case AS2:
+                case AS3:
+                case AS4:
+                case BAS1:
+                case BAS2:
+                    return IndexedSearch.aStar(indexed, h, options);
+                default:
+                    break;
+            }
+        }
 
         switch (strategy) {
             case BF:
@@ -60,15 +159,27 @@ public abstract class GenericSearch {
             case ID:
                 return iterativeDeepeningSearch(problem);
             case UC:
-                return uniformCostSearch(problem);
+            case UCB: // bucket queue needs dense ids; heap-based UCS instead
+            case BUC: // bidirectional variants need a BidirectionalProblem
+            case CH:  // a hierarchy only pays off across many queries (see DeliverySearch)
+            case HPA: // clusters need a grid (see DeliverySearch)
+            case APSP: // all-pairs tables only pay off across many queries
+                return uniformCostSearch(problem, options);
             case GR1:
-                return greedySearch(problem, h1);
             case GR2:
-                return greedySearch(problem, h2);
+            case GR3:
+            case GR4:
+                return greedySearch(problem, h, options);
             case AS1:
-                return aStarSearch(problem, h1);
             case AS2:
-                return aStarSearch(problem, h2);
+            case AS3:
+            case AS4:
+            case BAS1:
+            case BAS2:
+                return aStarSearch(problem, h, options);
+            case IDA1:
+            case IDA2:
+                return idaStarSearch(problem, h);
             default:
                 throw new IllegalArgumentException("Unknown strategy: " + strategy);
         }
@@ -85,6 +196,7 @@ public abstract class GenericSearch {
         Set<S> explored = new HashSet<>();
         Set<S> inFrontier = new HashSet<>(); // Track states in frontier
         int nodesExpanded = 0;
+        int peakFrontier = 0;
 
         Node<S, A> root = new Node<>(problem.initialState(), null, null, 0, 0);
         frontier.add(root);
@@ -96,7 +208,7 @@ public abstract class GenericSearch {
 
             // Goal test AFTER removing from frontier
             if (problem.isGoal(node.state)) {
-                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded);
+                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded, peakFrontier);
             }
 
             // Skip if already explored
@@ -108,12 +220,9 @@ public abstract class GenericSearch {
             nodesExpanded++;
 
             // Expand node
-            for (A action : problem.actions(node.state)) {
-                S childState = problem.result(node.state, action);
-                
+            problem.forEachSuccessor(node.state, (action, childState, stepCost) -> {
                 // Only add if not explored and not already in frontier
                 if (!explored.contains(childState) && !inFrontier.contains(childState)) {
-                    double stepCost = problem.stepCost(node.state, action, childState);
                     Node<S, A> child = new Node<>(
                         childState,
                         node,
@@ -124,10 +233,11 @@ public abstract class GenericSearch {
                     frontier.add(child);
                     inFrontier.add(childState);
                 }
-            }
+            });
+            peakFrontier = Math.max(peakFrontier, frontier.size());
         }
 
-        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded);
+        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded, peakFrontier);
     }
 
     /**
@@ -139,7 +249,9 @@ public abstract class GenericSearch {
     private static <S, A> SearchResult<S, A> depthFirstSearch(Problem<S, A> problem) {
         Stack<Node<S, A>> frontier = new Stack<>();
         Set<S> explored = new HashSet<>();
+        List<Node<S, A>> children = new ArrayList<>();
         int nodesExpanded = 0;
+        int peakFrontier = 0;
 
         Node<S, A> root = new Node<>(problem.initialState(), null, null, 0, 0);
         frontier.push(root);
@@ -149,7 +261,7 @@ public abstract class GenericSearch {
 
             // Goal test
             if (problem.isGoal(node.state)) {
-                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded);
+                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded, peakFrontier);
             }
 
             // Skip if already explored
@@ -161,26 +273,25 @@ public abstract class GenericSearch {
             nodesExpanded++;
 
             // Add children in reverse order for consistent left-to-right expansion
-            List<A> actions = problem.actions(node.state);
-            for (int i = actions.size() - 1; i >= 0; i--) {
-                A action = actions.get(i);
-                S childState = problem.result(node.state, action);
-                
+            children.clear();
+            problem.forEachSuccessor(node.state, (action, childState, stepCost) -> {
                 if (!explored.contains(childState)) {
-                    double stepCost = problem.stepCost(node.state, action, childState);
-                    Node<S, A> child = new Node<>(
+                    children.add(new Node<>(
                         childState,
                         node,
                         action,
                         node.depth + 1,
                         node.pathCost + stepCost
-                    );
-                    frontier.push(child);
+                    ));
                 }
+            });
+            for (int i = children.size() - 1; i >= 0; i--) {
+                frontier.push(children.get(i));
             }
+            peakFrontier = Math.max(peakFrontier, frontier.size());
         }
 
-        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded);
+        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded, peakFrontier);
     }
 
     /**
@@ -188,37 +299,50 @@ public abstract class GenericSearch {
      * Combines benefits of BFS and DFS.
      * Complete and optimal for unit costs.
      * Time: O(b^d), Space: O(bd) where b=branching factor, d=depth
+     *
+     * Stops as soon as an iteration is not cut off by its depth limit: the
+     * whole reachable space was searched and a deeper limit cannot help.
      */
     private static <S, A> SearchResult<S, A> iterativeDeepeningSearch(Problem<S, A> problem) {
         int totalNodesExpanded = 0;
+        int peakFrontier = 0;
+        boolean[] cutOff = new boolean[1];
 
         for (int depthLimit = 0; depthLimit < Integer.MAX_VALUE; depthLimit++) {
-            SearchResult<S, A> result = depthLimitedSearch(problem, depthLimit);
+            cutOff[0] = false;
+            SearchResult<S, A> result = depthLimitedSearch(problem, depthLimit, cutOff);
             totalNodesExpanded += result.nodesExpanded;
+            peakFrontier = Math.max(peakFrontier, result.peakFrontier);
 
             if (result.cost != Double.POSITIVE_INFINITY) {
-                return new SearchResult<>(result.actions, result.cost, totalNodesExpanded);
+                return new SearchResult<>(result.actions, result.cost, totalNodesExpanded, peakFrontier);
             }
 
-            // Safety: Stop if depth gets unreasonably large
-            if (depthLimit > 1000) {
+            if (!cutOff[0]) {
                 break;
             }
         }
 
-        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, totalNodesExpanded);
+        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, totalNodesExpanded, peakFrontier);
     }
 
     /**
      * Depth-Limited Search (helper for IDS)
+     *
+     * A state is expanded again only when reached at a smaller depth than
+     * before; deeper revisits cannot find anything the first visit missed.
+     * Sets cutOff[0] when some node was not expanded because of the limit.
      */
     private static <S, A> SearchResult<S, A> depthLimitedSearch(
             Problem<S, A> problem, 
-            int depthLimit) {
+            int depthLimit,
+            boolean[] cutOff) {
         
         Stack<Node<S, A>> frontier = new Stack<>();
-        Set<String> explored = new HashSet<>(); // Use path-based cycle detection
+        Map<S, Integer> minDepth = new HashMap<>();
+        List<Node<S, A>> children = new ArrayList<>();
         int nodesExpanded = 0;
+        int peakFrontier = 0;
 
         Node<S, A> root = new Node<>(problem.initialState(), null, null, 0, 0);
         frontier.push(root);
@@ -227,40 +351,132 @@ public abstract class GenericSearch {
             Node<S, A> node = frontier.pop();
 
             if (problem.isGoal(node.state)) {
-                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded);
+                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded, peakFrontier);
             }
 
             if (node.depth >= depthLimit) {
+                cutOff[0] = true;
                 continue;
             }
 
-            // Create unique key for this state at this depth
-            String key = node.state.toString() + "@" + node.depth;
-            if (explored.contains(key)) {
+            Integer seenDepth = minDepth.get(node.state);
+            if (seenDepth != null && node.depth >= seenDepth) {
                 continue;
             }
 
-            explored.add(key);
+            minDepth.put(node.state, node.depth);
             nodesExpanded++;
 
-            List<A> actions = problem.actions(node.state);
-            for (int i = actions.size() - 1; i >= 0; i--) {
-                A action = actions.get(i);
-                S childState = problem.result(node.state, action);
-                
-                double stepCost = problem.stepCost(node.state, action, childState);
-                Node<S, A> child = new Node<>(
+            children.clear();
+            problem.forEachSuccessor(node.state, (action, childState, stepCost) ->
+                children.add(new Node<>(
                     childState,
                     node,
                     action,
                     node.depth + 1,
                     node.pathCost + stepCost
-                );
-                frontier.push(child);
+                ))
+            );
+            for (int i = children.size() - 1; i >= 0; i--) {
+                frontier.push(children.get(i));
+            }
+            peakFrontier = Math.max(peakFrontier, frontier.size());
+        }
+
+        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded, peakFrontier);
+    }
+
+    /**
+     * Iterative Deepening A* (IDA*)
+     * Depth-first iterations bounded by f(n) = g(n) + h(n); each new bound is
+     * the smallest f that exceeded the previous one.
+     * Optimal if heuristic is admissible.
+     * Space: O(d) nodes on the current path, plus the best g of each state
+     * reached in the current iteration; a state reached again without a
+     * smaller g is skipped (this also rules out cycles).
+     */
+    private static <S, A> SearchResult<S, A> idaStarSearch(
+            Problem<S, A> problem,
+            Heuristic<S> heuristic) {
+
+        S initial = problem.initialState();
+        Node<S, A> root = new Node<>(initial, null, null, 0, 0, heuristic.h(initial));
+        Map<S, Double> bestCost = new HashMap<>();
+        int[] stats = new int[3];   // nodes expanded, deepest path, heuristic calls
+        stats[2] = 1;
+
+        double bound = root.f;
+        while (true) {
+            double[] nextBound = {Double.POSITIVE_INFINITY};
+            bestCost.clear();
+            bestCost.put(initial, 0.0);
+            Node<S, A> goal = boundedSearch(problem, heuristic, root, bound, bestCost, nextBound, stats);
+            if (goal != null) {
+                return new SearchResult<>(extractPath(goal), goal.pathCost, stats[0], stats[1], stats[2]);
             }
+            if (nextBound[0] == Double.POSITIVE_INFINITY) {
+                return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, stats[0], stats[1],
+                        stats[2]);
+            }
+            bound = nextBound[0];
+        }
+    }
+
+    /**
+     * One IDA* iteration below node; returns the goal node or null.
+     */
+    private static <S, A> Node<S, A> boundedSearch(
+            Problem<S, A> problem,
+            Heuristic<S> heuristic,
+            Node<S, A> node,
+            double bound,
+            Map<S, Double> bestCost,
+            double[] nextBound,
+            int[] stats) {
+
+        if (node.f > bound) {
+            nextBound[0] = Math.min(nextBound[0], node.f);
+            return null;
+        }
+        if (problem.isGoal(node.state)) {
+            return node;
         }
 
-        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded);
+        stats[0]++;
+        stats[1] = Math.max(stats[1], node.depth + 1);
+
+        List<Node<S, A>> children = new ArrayList<>();
+        problem.forEachSuccessor(node.state, (action, childState, stepCost) -> {
+            double newCost = node.pathCost + stepCost;
+            Double best = bestCost.get(childState);
+            if (best == null || newCost < best) {
+                children.add(new Node<>(
+                    childState,
+                    node,
+                    action,
+                    node.depth + 1,
+                    newCost,
+                    heuristic.h(childState)
+                ));
+            }
+        });
+        stats[2] += children.size();
+
+        for (Node<S, A> child : children) {
+            // Siblings may have lowered the child's best cost in the meantime
+            Double best = bestCost.get(child.state);
+            if (best != null && child.pathCost >= best) {
+                continue;
+            }
+            if (child.f <= bound) {
+                bestCost.put(child.state, child.pathCost);
+            }
+            Node<S, A> goal = boundedSearch(problem, heuristic, child, bound, bestCost, nextBound, stats);
+            if (goal != null) {
+                return goal;
+            }
+        }
+        return null;
     }
 
     /**
@@ -269,13 +485,16 @@ public abstract class GenericSearch {
      * Guarantees optimal solution.
      * Time complexity: Exponential in path cost
      * Space complexity: Exponential in path cost
+     *
+     * Gives up once the popped cost exceeds options.costBound.
      */
-    private static <S, A> SearchResult<S, A> uniformCostSearch(Problem<S, A> problem) {
+    private static <S, A> SearchResult<S, A> uniformCostSearch(Problem<S, A> problem, SearchOptions options) {
         PriorityQueue<Node<S, A>> frontier = new PriorityQueue<>(
             Comparator.comparingDouble(n -> n.pathCost)
         );
         Map<S, Double> bestCost = new HashMap<>();
         int nodesExpanded = 0;
+        int peakFrontier = 0;
 
         Node<S, A> root = new Node<>(problem.initialState(), null, null, 0, 0);
         frontier.add(root);
@@ -284,9 +503,15 @@ public abstract class GenericSearch {
         while (!frontier.isEmpty()) {
             Node<S, A> node = frontier.poll();
 
+            // The popped cost is the smallest left on the frontier
+            if (node.pathCost > options.costBound) {
+                return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded, peakFrontier,
+                        0, true);
+            }
+
             // Goal test
             if (problem.isGoal(node.state)) {
-                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded);
+                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded, peakFrontier);
             }
 
             // Skip if we've found a better path to this state
@@ -296,9 +521,7 @@ public abstract class GenericSearch {
 
             nodesExpanded++;
 
-            for (A action : problem.actions(node.state)) {
-                S childState = problem.result(node.state, action);
-                double stepCost = problem.stepCost(node.state, action, childState);
+            problem.forEachSuccessor(node.state, (action, childState, stepCost) -> {
                 double newCost = node.pathCost + stepCost;
 
                 // Only add if this is a better path
@@ -313,10 +536,11 @@ public abstract class GenericSearch {
                     );
                     frontier.add(child);
                 }
-            }
+            });
+            peakFrontier = Math.max(peakFrontier, frontier.size());
         }
 
-        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded);
+        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded, peakFrontier);
     }
 
     /**
@@ -324,25 +548,35 @@ public abstract class GenericSearch {
      * Expands node with lowest heuristic value h(n).
      * Not optimal, but can be very fast.
      * Time and Space: O(b^m) where b=branching factor, m=max depth
+     *
+     * h is evaluated once per generated node and cached in the node, so the
+     * frontier's comparisons never call the heuristic. Ties on h stay in
+     * heap order: SearchOptions.tieBreak is for A* only (preferring larger
+     * g among equal h makes greedy paths longer).
      */
     private static <S, A> SearchResult<S, A> greedySearch(
             Problem<S, A> problem,
-            Heuristic<S> heuristic) {
+            Heuristic<S> heuristic,
+            SearchOptions options) {
         
         PriorityQueue<Node<S, A>> frontier = new PriorityQueue<>(
-            Comparator.comparingDouble(n -> heuristic.h(n.state))
+            Comparator.comparingDouble(n -> n.h)
         );
         Set<S> explored = new HashSet<>();
         int nodesExpanded = 0;
+        int peakFrontier = 0;
+        int heuristicCalls = 1;
 
-        Node<S, A> root = new Node<>(problem.initialState(), null, null, 0, 0);
+        S initial = problem.initialState();
+        Node<S, A> root = new Node<>(initial, null, null, 0, 0, heuristic.h(initial));
         frontier.add(root);
 
         while (!frontier.isEmpty()) {
             Node<S, A> node = frontier.poll();
 
             if (problem.isGoal(node.state)) {
-                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded);
+                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded, peakFrontier,
+                        heuristicCalls);
             }
 
             if (explored.contains(node.state)) {
@@ -352,24 +586,27 @@ public abstract class GenericSearch {
             explored.add(node.state);
             nodesExpanded++;
 
-            for (A action : problem.actions(node.state)) {
-                S childState = problem.result(node.state, action);
-                
+            // Every child added to the frontier costs one heuristic call
+            int before = frontier.size();
+            problem.forEachSuccessor(node.state, (action, childState, stepCost) -> {
                 if (!explored.contains(childState)) {
-                    double stepCost = problem.stepCost(node.state, action, childState);
                     Node<S, A> child = new Node<>(
                         childState,
                         node,
                         action,
                         node.depth + 1,
-                        node.pathCost + stepCost
+                        node.pathCost + stepCost,
+                        heuristic.h(childState)
                     );
                     frontier.add(child);
                 }
-            }
+            });
+            heuristicCalls += frontier.size() - before;
+            peakFrontier = Math.max(peakFrontier, frontier.size());
         }
 
-        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded);
+        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded, peakFrontier,
+                heuristicCalls);
     }
 
     /**
@@ -377,26 +614,41 @@ public abstract class GenericSearch {
      * Expands node with lowest f(n) = g(n) + h(n).
      * Optimal if heuristic is admissible.
      * Time and Space: Exponential in worst case, but efficient with good heuristic
+     *
+     * h and f are computed once when a node is generated and cached in the
+     * node; the frontier orders by the cached f. Gives up once the popped f
+     * exceeds options.costBound.
      */
     private static <S, A> SearchResult<S, A> aStarSearch(
             Problem<S, A> problem,
-            Heuristic<S> heuristic) {
+            Heuristic<S> heuristic,
+            SearchOptions options) {
         
         PriorityQueue<Node<S, A>> frontier = new PriorityQueue<>(
-            Comparator.comparingDouble(n -> n.pathCost + heuristic.h(n.state))
+            withTieBreak(Comparator.comparingDouble(n -> n.f), options)
         );
         Map<S, Double> bestCost = new HashMap<>();
         int nodesExpanded = 0;
+        int peakFrontier = 0;
+        int heuristicCalls = 1;
 
-        Node<S, A> root = new Node<>(problem.initialState(), null, null, 0, 0);
+        S initial = problem.initialState();
+        Node<S, A> root = new Node<>(initial, null, null, 0, 0, heuristic.h(initial));
         frontier.add(root);
         bestCost.put(root.state, 0.0);
 
         while (!frontier.isEmpty()) {
             Node<S, A> node = frontier.poll();
 
+            // The popped f is the smallest left on the frontier
+            if (node.f > options.costBound) {
+                return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded, peakFrontier,
+                        heuristicCalls, true);
+            }
+
             if (problem.isGoal(node.state)) {
-                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded);
+                return new SearchResult<>(extractPath(node), node.pathCost, nodesExpanded, peakFrontier,
+                        heuristicCalls);
             }
 
             // Skip if we've found a better path
@@ -406,9 +658,9 @@ public abstract class GenericSearch {
 
             nodesExpanded++;
 
-            for (A action : problem.actions(node.state)) {
-                S childState = problem.result(node.state, action);
-                double stepCost = problem.stepCost(node.state, action, childState);
+            // Every child added to the frontier costs one heuristic call
+            int before = frontier.size();
+            problem.forEachSuccessor(node.state, (action, childState, stepCost) -> {
                 double newCost = node.pathCost + stepCost;
 
                 if (!bestCost.containsKey(childState) || newCost < bestCost.get(childState)) {
@@ -418,14 +670,33 @@ public abstract class GenericSearch {
                         node,
                         action,
                         node.depth + 1,
-                        newCost
+                        newCost,
+                        heuristic.h(childState)
                     );
                     frontier.add(child);
                 }
-            }
+            });
+            heuristicCalls += frontier.size() - before;
+            peakFrontier = Math.max(peakFrontier, frontier.size());
         }
 
-        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded);
+        return new SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY, nodesExpanded, peakFrontier,
+                heuristicCalls);
+    }
+
+    /**
+     * Apply the configured tie-breaking among nodes with equal priority.
+     */
+    private static <S, A> Comparator<Node<S, A>> withTieBreak(Comparator<Node<S, A>> order,
+                                                            SearchOptions options) {
+        switch (options.tieBreak) {
+            case LARGER_G:
+                return order.thenComparingDouble(n -> -n.pathCost);
+            case SMALLER_G:
+                return order.thenComparingDouble(n -> n.pathCost);
+            default:
+                return order;
+        }
     }
 
     /**
@@ -0,0 +1,46 @@
+package code;
+
+import java.util.*;
+
+/**
+ * The per-goal terms of a GoalHeuristic for the last few goals, so repeated
+ * goals (one per customer in lowerBounds and the planner) skip the portal
+ * graph and the table. Entries are only valid for the tunnel list they were
+ * built from; a different list clears them. Shared by every thread and
+ * guarded by the map itself.
+ */
+final class GoalCache<V> {
+
+    /** Number of goals kept. */
+    static final int SIZE = 8;
+
+    private final Map<State, V> goals = new LinkedHashMap<State, V>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<State, V> eldest) {
+            return size() > SIZE;
+        }
+    };
+    private List<Tunnel> tunnels;
+
+    /**
+     * Cached value of a goal, or null; forgets every value when the tunnels
+     * differ from those they were built for.
+     */
+    V get(State goal, List<Tunnel> tunnels) {
+        synchronized (goals) {
+            if (tunnels != this.tunnels) {
+                goals.clear();
+                this.tunnels = tunnels;
+            }
+            return goals.get(goal);
+        }
+    }
+
+    void put(State goal, List<Tunnel> tunnels, V value) {
+        synchronized (goals) {
+            if (tunnels == this.tunnels) {
+                goals.put(goal, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package code;
+
+import java.util.List;
+
+/**
+ * A delivery heuristic that needs a goal before it can bound anything.
+ *
+ * forGoal returns a heuristic fixed to one goal, which any number of
+ * concurrent searches may share; the GoalHeuristic itself holds only
+ * goal-independent data (bounds, tables, caches).
+ */
+public interface GoalHeuristic {
+
+    /**
+     * An immutable heuristic towards the given goal.
+     */
+    Heuristic<State> forGoal(State goal, List<Tunnel> tunnels);
+}
@@ -0,0 +1,39 @@
+package code;
+
+import java.util.List;
+
+/**
+ * Transitions of a state space without a start or a goal: what
+ * preprocessing (components, heuristic tables, hierarchies) reads. A
+ * {@link Problem} adds the start and the goal test of one search.
+ */
+public interface Graph<State, Action> {
+
+    List<Action> actions(State state);
+
+    State result(State state, Action action);
+
+    double stepCost(State state, Action action, State nextState);
+
+    /**
+     * Report every successor of a state, in actions() order, as one
+     * (action, child, cost) triple each. The default goes through
+     * actions/result/stepCost; graphs override it to expand a state in a
+     * single pass without building an action list.
+     */
+    default void forEachSuccessor(State state, TransitionVisitor<State, Action> visitor) {
+        for (Action action : actions(state)) {
+            State child = result(state, action);
+            visitor.visit(action, child, stepCost(state, action, child));
+        }
+    }
+
+    /**
+     * Largest possible step cost when every step cost is a non-negative
+     * integer, or -1 if costs may be fractional (or no bound is known).
+     * Bucket-based strategies (UCB) fall back to a heap when this is -1.
+     */
+    default int integerStepCostBound() {
+        return -1;
+    }
+}
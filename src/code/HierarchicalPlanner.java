@@ -0,0 +1,488 @@
+package code;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * HPA* (hierarchical path-finding A*) over a DeliverySearch grid.
+ *
+ * The grid is cut into clusterSize x clusterSize clusters. Where two
+ * clusters touch, every run of open border crossings becomes an entrance:
+ * the crossing in the middle of a short run, both ends of a long one. The
+ * cells of these crossings, plus all tunnel endpoints, are the abstract
+ * nodes. Abstract edges are
+ * - inter edges: the single road or tunnel between two abstract nodes
+ * - intra edges: the cheapest path between two abstract nodes of the same
+ *   cluster that stays inside it (precomputed per cluster)
+ *
+ * A query connects start and goal to the abstract nodes of their clusters,
+ * runs Dijkstra on the abstract graph (plus the direct in-cluster path when
+ * both lie in one cluster) and returns a {@link Route} of waypoints. Actions
+ * are produced lazily, one in-cluster search per segment, when a caller
+ * asks for them.
+ *
+ * Routes are near-optimal: the cost is exact for the route returned, but a
+ * shorter path may cross a border away from the chosen entrance cells.
+ * Query work depends on the cluster size and the abstract graph, not on the
+ * full grid. Each query (and each refinement of a route's actions) borrows
+ * a workspace of scratch arrays from a pool, so queries may overlap.
+ */
+public final class HierarchicalPlanner {
+
+    /**
+     * A run of open crossings gets one entrance per this many crossings.
+     * One entrance per run (the textbook choice) costs 10-15% on random
+     * traffic; 3 keeps routes within a few percent of optimal.
+     */
+    private static final int ENTRANCE_SPACING = 3;
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final DeliverySearch graph;
+    private final int m;
+    private final int n;
+    private final CellLayout layout;
+    private final int clusterSize;
+    private final int clusterColumns;
+
+    // Abstract graph: node ids 0 .. nodeCount-1, edges in CSR form
+    private final int[] abstractOf;             // cell -> abstract node, -1 if none
+    private final int[] nodeCell;
+    private final int[][] clusterNodes;         // cluster -> its abstract nodes
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final int[] edgeCosts;
+
+    private final long preprocessingNanos;
+
+    // Query scratch, one per concurrent query; returned to the pool afterwards
+    private final Queue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+
+    public HierarchicalPlanner(DeliverySearch graph, int clusterSize) {
+        if (clusterSize < 1) {
+            throw new IllegalArgumentException("Cluster size must be positive: " + clusterSize);
+        }
+        long startTime = System.nanoTime();
+
+        TrafficGrid traffic = graph.getTrafficGrid();
+        this.graph = graph;
+        this.m = traffic.m;
+        this.n = traffic.n;
+        this.layout = traffic.getLayout();
+        this.clusterSize = clusterSize;
+        this.clusterColumns = (n + clusterSize - 1) / clusterSize;
+        int cells = m * n;
+
+        // Abstract nodes: entrance cells, then tunnel endpoints
+        this.abstractOf = new int[cells];
+        Arrays.fill(abstractOf, -1);
+        List<Integer> nodes = new ArrayList<>();
+        for (int x = clusterSize; x < m; x += clusterSize) {
+            addEntrances(traffic, nodes, x, true);
+        }
+        for (int y = clusterSize; y < n; y += clusterSize) {
+            addEntrances(traffic, nodes, y, false);
+        }
+        TunnelIndex tunnels = graph.getTunnelIndex();
+        for (int cell = 0; cell < cells; cell++) {
+            if (tunnels.count(cell) > 0) {
+                addNode(nodes, cell);
+            }
+        }
+        this.nodeCell = new int[nodes.size()];
+        for (int i = 0; i < nodeCell.length; i++) {
+            nodeCell[i] = nodes.get(i);
+        }
+
+        int clusterCount = ((m + clusterSize - 1) / clusterSize) * clusterColumns;
+        List<List<Integer>> byCluster = new ArrayList<>();
+        for (int c = 0; c < clusterCount; c++) {
+            byCluster.add(new ArrayList<>());
+        }
+        for (int node = 0; node < nodeCell.length; node++) {
+            byCluster.get(clusterOf(nodeCell[node])).add(node);
+        }
+        this.clusterNodes = new int[clusterCount][];
+        for (int c = 0; c < clusterCount; c++) {
+            clusterNodes[c] = byCluster.get(c).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // Edges: inter edges from the real successors, intra edges from a
+        // cluster-bounded Dijkstra per abstract node
+        List<int[]> edges = new ArrayList<>();   // {from, to, cost}
+        Workspace workspace = new Workspace();
+        for (int node = 0; node < nodeCell.length; node++) {
+            int from = node;
+            int cell = nodeCell[node];
+            graph.forEachSuccessor(cell, (action, child, cost) -> {
+                if (abstractOf[child] >= 0 && (action == Action.TUNNEL || clusterOf(child) != clusterOf(cell))) {
+                    edges.add(new int[]{from, abstractOf[child], (int) cost});
+                }
+            });
+            workspace.searchCluster(cell, -1, true);
+            for (int other : clusterNodes[clusterOf(cell)]) {
+                int d = workspace.cellDist[nodeCell[other]];
+                if (other != node && d != INF) {
+                    edges.add(new int[]{node, other, d});
+                }
+            }
+            workspace.clearCells();
+        }
+        workspaces.offer(workspace);
+
+        this.edgeOffsets = new int[nodeCell.length + 1];
+        this.edgeTargets = new int[edges.size()];
+        this.edgeCosts = new int[edges.size()];
+        for (int[] edge : edges) {
+            edgeOffsets[edge[0] + 1]++;
+        }
+        for (int i = 0; i < nodeCell.length; i++) {
+            edgeOffsets[i + 1] += edgeOffsets[i];
+        }
+        int[] fill = Arrays.copyOf(edgeOffsets, nodeCell.length);
+        for (int[] edge : edges) {
+            int slot = fill[edge[0]]++;
+            edgeTargets[slot] = edge[1];
+            edgeCosts[slot] = edge[2];
+        }
+
+        this.preprocessingNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Entrances across the border in front of row (horizontal) or column
+     * line. A crossing is open if the road is open in either direction.
+     */
+    private void addEntrances(TrafficGrid traffic, List<Integer> nodes, int line, boolean horizontal) {
+        int length = horizontal ? n : m;
+        int forward = horizontal ? 1 : 3;   // DOWN / RIGHT in TrafficGrid order
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean open = false;
+            // A run also ends at the edge of a cluster along the border
+            boolean clusterEdge = i == length || (i > 0 && i % clusterSize == 0);
+            if (i < length) {
+                int before = horizontal ? traffic.cell(line - 1, i) : traffic.cell(i, line - 1);
+                int after = horizontal ? traffic.cell(line, i) : traffic.cell(i, line);
+                open = traffic.traffic(before, forward) > 0 || traffic.traffic(after, forward ^ 1) > 0;
+            }
+            if (runStart >= 0 && (!open || clusterEdge)) {
+                int runEnd = i - 1;
+                int runLength = runEnd - runStart + 1;
+                int parts = (runLength + ENTRANCE_SPACING - 1) / ENTRANCE_SPACING;
+                for (int j = 0; j < parts; j++) {
+                    addCrossing(nodes, line, runStart + (2 * j + 1) * runLength / (2 * parts), horizontal);
+                }
+                runStart = -1;
+            }
+            if (open && runStart < 0) {
+                runStart = i;
+            }
+        }
+    }
+
+    private void addCrossing(List<Integer> nodes, int line, int i, boolean horizontal) {
+        addNode(nodes, horizontal ? layout.id(line - 1, i) : layout.id(i, line - 1));
+        addNode(nodes, horizontal ? layout.id(line, i) : layout.id(i, line));
+    }
+
+    private void addNode(List<Integer> nodes, int cell) {
+        if (abstractOf[cell] < 0) {
+            abstractOf[cell] = nodes.size();
+            nodes.add(cell);
+        }
+    }
+
+    private int clusterOf(int cell) {
+        return (layout.x(cell) / clusterSize) * clusterColumns + layout.y(cell) / clusterSize;
+    }
+
+    // ------------------ QUERIES ------------------
+
+    /**
+     * Near-optimal route from start to goal; the cost is infinite (and the
+     * route empty) if no route exists.
+     */
+    public Route query(State start, State goal) {
+        int source = graph.indexOf(start);
+        int target = graph.indexOf(goal);
+        if (source == target) {
+            return new Route(new int[]{source}, 0, 0);
+        }
+        Workspace workspace = borrow();
+        try {
+            return workspace.query(source, target);
+        } finally {
+            workspaces.offer(workspace);
+        }
+    }
+
+    private List<Action> refine(int[] waypoints) {
+        Workspace workspace = borrow();
+        try {
+            return workspace.refine(waypoints);
+        } finally {
+            workspaces.offer(workspace);
+        }
+    }
+
+    private Workspace borrow() {
+        Workspace workspace = workspaces.poll();
+        return workspace != null ? workspace : new Workspace();
+    }
+
+    /**
+     * Scratch for in-cluster searches (cells) and abstract searches
+     * (nodes). Cell entries are cleared through the touched list.
+     */
+    private final class Workspace {
+        final int[] cellDist = new int[m * n];
+        final int[] cellParent = new int[m * n];
+        final Action[] cellAction = new Action[m * n];
+        final IndexedHeap cellHeap = new IndexedHeap(m * n, 4);
+        final int[] cellTouched = new int[m * n];
+        int cellTouchedCount;
+        final int[] nodeDist = new int[nodeCell.length];
+        final int[] nodeParent = new int[nodeCell.length];
+        final IndexedHeap nodeHeap = new IndexedHeap(Math.max(1, nodeCell.length), 4);
+
+        Workspace() {
+            Arrays.fill(cellDist, INF);
+        }
+
+        Route query(int source, int target) {
+            int targetCluster = clusterOf(target);
+            int nodesExpanded = 0;
+
+            // Connect the start to the abstract nodes of its cluster
+            Arrays.fill(nodeDist, INF);
+            nodesExpanded += searchCluster(source, -1, true);
+            int best = clusterOf(source) == targetCluster ? cellDist[target] : INF;
+            for (int node : clusterNodes[clusterOf(source)]) {
+                int d = cellDist[nodeCell[node]];
+                if (d != INF) {
+                    nodeDist[node] = d;
+                    nodeParent[node] = -1;
+                    nodeHeap.insertOrDecrease(node, d);
+                }
+            }
+            clearCells();
+
+            // ... and the abstract nodes of the goal's cluster to the goal
+            nodesExpanded += searchCluster(target, -1, false);
+            int[] targetNodes = clusterNodes[targetCluster];
+            int[] toTarget = new int[targetNodes.length];
+            for (int i = 0; i < targetNodes.length; i++) {
+                toTarget[i] = cellDist[nodeCell[targetNodes[i]]];
+            }
+            clearCells();
+
+            // Dijkstra on the abstract graph; -1 means the direct in-cluster path
+            int bestNode = -1;
+            while (!nodeHeap.isEmpty() && nodeHeap.topKey() < best) {
+                int node = nodeHeap.pop();
+                nodesExpanded++;
+                int d = nodeDist[node];
+                for (int i = 0; i < targetNodes.length; i++) {
+                    if (targetNodes[i] == node && toTarget[i] != INF && d + toTarget[i] < best) {
+                        best = d + toTarget[i];
+                        bestNode = node;
+                    }
+                }
+                for (int i = edgeOffsets[node]; i < edgeOffsets[node + 1]; i++) {
+                    int next = edgeTargets[i];
+                    if (d + edgeCosts[i] < nodeDist[next]) {
+                        nodeDist[next] = d + edgeCosts[i];
+                        nodeParent[next] = node;
+                        nodeHeap.insertOrDecrease(next, nodeDist[next]);
+                    }
+                }
+            }
+            while (!nodeHeap.isEmpty()) {
+                nodeHeap.pop();
+            }
+
+            if (best == INF) {
+                return new Route(new int[0], Double.POSITIVE_INFINITY, nodesExpanded);
+            }
+            List<Integer> cells = new ArrayList<>();
+            cells.add(target);
+            for (int node = bestNode; node >= 0; node = nodeParent[node]) {
+                cells.add(nodeCell[node]);
+            }
+            cells.add(source);
+            Collections.reverse(cells);
+            // The start or goal may itself be an abstract node
+            int[] waypoints = new int[cells.size()];
+            int count = 0;
+            for (int cell : cells) {
+                if (count == 0 || waypoints[count - 1] != cell) {
+                    waypoints[count++] = cell;
+                }
+            }
+            return new Route(Arrays.copyOf(waypoints, count), best, nodesExpanded);
+        }
+
+        /**
+         * Actions of a waypoint sequence: consecutive waypoints either share a
+         * cluster (in-cluster search) or are joined by one road or tunnel.
+         */
+        List<Action> refine(int[] waypoints) {
+            List<Action> actions = new ArrayList<>();
+            for (int i = 0; i + 1 < waypoints.length; i++) {
+                int from = waypoints[i];
+                int to = waypoints[i + 1];
+                if (clusterOf(from) == clusterOf(to)) {
+                    searchCluster(from, to, true);
+                    int start = actions.size();
+                    for (int cell = to; cell != from; cell = cellParent[cell]) {
+                        actions.add(cellAction[cell]);
+                    }
+                    Collections.reverse(actions.subList(start, actions.size()));
+                    clearCells();
+                } else {
+                    Action[] step = new Action[1];
+                    double[] stepCost = {Double.POSITIVE_INFINITY};
+                    graph.forEachSuccessor(from, (action, child, cost) -> {
+                        if (child == to && cost < stepCost[0]) {
+                            step[0] = action;
+                            stepCost[0] = cost;
+                        }
+                    });
+                    actions.add(step[0]);
+                }
+            }
+            return actions;
+        }
+
+        /**
+         * Dijkstra from source that never leaves its cluster, over forward
+         * edges or (forward = false) reversed ones, stopping early once stop is
+         * settled (-1: search the whole cluster). Results stay in cellDist,
+         * cellParent and cellAction until clearCells().
+         *
+         * @return number of cells settled
+         */
+        private int searchCluster(int source, int stop, boolean forward) {
+            ClusterSearch search = new ClusterSearch(clusterOf(source));
+            touchCell(source, 0, -1, null);
+            cellHeap.insertOrDecrease(source, 0);
+            int settled = 0;
+            while (!cellHeap.isEmpty()) {
+                search.from = cellHeap.pop();
+                settled++;
+                if (search.from == stop) {
+                    break;
+                }
+                if (forward) {
+                    graph.forEachSuccessor(search.from, search);
+                } else {
+                    graph.forEachPredecessor(search.from, search);
+                }
+            }
+            return settled;
+        }
+
+        /**
+         * Relaxation for searchCluster; from is the cell being expanded. In a
+         * reversed search cellParent points towards the source.
+         */
+        private final class ClusterSearch implements IndexedTransitionVisitor<Action> {
+            final int cluster;
+            int from;
+
+            ClusterSearch(int cluster) {
+                this.cluster = cluster;
+            }
+
+            @Override
+            public void visit(Action action, int other, double cost) {
+                int d = cellDist[from] + (int) cost;
+                if (d < cellDist[other] && clusterOf(other) == cluster) {
+                    touchCell(other, d, from, action);
+                    cellHeap.insertOrDecrease(other, d);
+                }
+            }
+        }
+
+        private void touchCell(int cell, int d, int parent, Action action) {
+            if (cellDist[cell] == INF) {
+                cellTouched[cellTouchedCount++] = cell;
+            }
+            cellDist[cell] = d;
+            cellParent[cell] = parent;
+            cellAction[cell] = action;
+        }
+
+        private void clearCells() {
+            while (!cellHeap.isEmpty()) {
+                cellHeap.pop();
+            }
+            for (int i = 0; i < cellTouchedCount; i++) {
+                cellDist[cellTouched[i]] = INF;
+            }
+            cellTouchedCount = 0;
+        }
+    }
+
+    // ------------------ STATISTICS ------------------
+
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    public int getAbstractNodeCount() {
+        return nodeCell.length;
+    }
+
+    public int getAbstractEdgeCount() {
+        return edgeTargets.length;
+    }
+
+    public long getPreprocessingMillis() {
+        return preprocessingNanos / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "HierarchicalPlanner(cluster=" + clusterSize + ", nodes=" + getAbstractNodeCount()
+                + ", edges=" + getAbstractEdgeCount() + ", preprocessing=" + getPreprocessingMillis() + "ms)";
+    }
+
+    /**
+     * Result of a query: the abstract waypoints (start, entrance and tunnel
+     * cells, goal) and the route's exact cost. Actions are refined from
+     * the waypoints on the first call to {@link #getActions()}.
+     */
+    public final class Route {
+        public final double cost;
+        public final int nodesExpanded;
+        private final int[] waypoints;
+        private List<Action> actions;
+
+        private Route(int[] waypoints, double cost, int nodesExpanded) {
+            this.waypoints = waypoints;
+            this.cost = cost;
+            this.nodesExpanded = nodesExpanded;
+        }
+
+        public List<State> getWaypoints() {
+            List<State> states = new ArrayList<>();
+            for (int cell : waypoints) {
+                states.add(graph.stateAt(cell));
+            }
+            return states;
+        }
+
+        public synchronized List<Action> getActions() {
+            if (actions == null) {
+                actions = refine(waypoints);
+            }
+            return actions;
+        }
+
+        public GenericSearch.SearchResult<State, Action> toSearchResult() {
+            return new GenericSearch.SearchResult<>(getActions(), cost, nodesExpanded);
+        }
+    }
+}
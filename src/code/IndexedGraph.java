@@ -0,0 +1,32 @@
+package code;
+
+/**
+ * A {@link Graph} whose states are numbered densely as 0 .. stateCount() - 1,
+ * so searches and preprocessing keep their bookkeeping in primitive arrays
+ * indexed by state id instead of hashing states into maps and sets.
+ */
+public interface IndexedGraph<State, Action> extends Graph<State, Action> {
+
+    /**
+     * Number of distinct states; every id lies in [0, stateCount()).
+     */
+    int stateCount();
+
+    /**
+     * Dense id of a state.
+     */
+    int indexOf(State state);
+
+    /**
+     * Inverse of {@link #indexOf(Object)}.
+     */
+    State stateAt(int index);
+
+    /**
+     * Successors of a state id, in actions() order. Override to expand
+     * without materialising State objects.
+     */
+    default void forEachSuccessor(int index, IndexedTransitionVisitor<Action> visitor) {
+        forEachSuccessor(stateAt(index), (action, child, cost) -> visitor.visit(action, indexOf(child), cost));
+    }
+}
@@ -0,0 +1,175 @@
+package code;
+
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap over dense ids with real decrease-key.
+ *
+ * Each id is present at most once, so the heap never holds more entries than
+ * there are distinct states (unlike java.util.PriorityQueue with lazy
+ * deletion, which keeps every stale duplicate until it is polled).
+ *
+ * The arity must be a power of two (2 = binary, 4 = quaternary, ...), which
+ * keeps parent/child arithmetic to shifts. A 4-ary heap is shallower and
+ * usually faster when decrease-key dominates.
+ *
+ * Entries are ordered by key, then by an optional tie value (e.g. -g to
+ * prefer deeper entries among equal f).
+ */
+public final class IndexedHeap {
+
+    private final int shift;        // log2(arity)
+    private final int[] heap;       // position -> id
+    private final double[] keys;    // position -> key
+    private final double[] ties;    // position -> tie-break value
+    private final int[] position;   // id -> position, -1 when absent
+    private int size;
+
+    /**
+     * @param capacity number of distinct ids (ids lie in [0, capacity))
+     * @param arity children per node; must be a power of two >= 2
+     */
+    public IndexedHeap(int capacity, int arity) {
+        if (arity < 2 || Integer.bitCount(arity) != 1) {
+            throw new IllegalArgumentException("Heap arity must be a power of two >= 2: " + arity);
+        }
+        this.shift = Integer.numberOfTrailingZeros(arity);
+        this.heap = new int[capacity];
+        this.keys = new double[capacity];
+        this.ties = new double[capacity];
+        this.position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return position[id] >= 0;
+    }
+
+    /**
+     * Remove every entry in O(size), without sifting.
+     */
+    public void clear() {
+        for (int p = 0; p < size; p++) {
+            position[heap[p]] = -1;
+        }
+        size = 0;
+    }
+
+    public double topKey() {
+        return keys[0];
+    }
+
+    /**
+     * Insert id with the given key, or lower its key if it is already queued
+     * with a larger one. A larger key for a queued id is ignored.
+     */
+    public void insertOrDecrease(int id, double key) {
+        insertOrDecrease(id, key, 0);
+    }
+
+    /**
+     * Same as {@link #insertOrDecrease(int, double)}, comparing (key, tie)
+     * lexicographically.
+     */
+    public void insertOrDecrease(int id, double key, double tie) {
+        int p = position[id];
+        if (p < 0) {
+            p = size++;
+            heap[p] = id;
+            keys[p] = key;
+            ties[p] = tie;
+            position[id] = p;
+            siftUp(p);
+        } else if (key < keys[p] || (key == keys[p] && tie < ties[p])) {
+            keys[p] = key;
+            ties[p] = tie;
+            siftUp(p);
+        }
+    }
+
+    /**
+     * Remove and return the id with the smallest key.
+     */
+    public int pop() {
+        int top = heap[0];
+        position[top] = -1;
+        int n = --size;
+        if (n > 0) {
+            heap[0] = heap[n];
+            keys[0] = keys[n];
+            ties[0] = ties[n];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int p) {
+        int id = heap[p];
+        double key = keys[p];
+        double tie = ties[p];
+        while (p > 0) {
+            int parent = (p - 1) >>> shift;
+            if (!less(key, tie, parent)) {
+                break;
+            }
+            move(parent, p);
+            p = parent;
+        }
+        heap[p] = id;
+        keys[p] = key;
+        ties[p] = tie;
+        position[id] = p;
+    }
+
+    private void siftDown(int p) {
+        int id = heap[p];
+        double key = keys[p];
+        double tie = ties[p];
+        while (true) {
+            int first = (p << shift) + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = Math.min(first + (1 << shift), size);
+            int best = first;
+            for (int c = first + 1; c < last; c++) {
+                if (less(keys[c], ties[c], best)) {
+                    best = c;
+                }
+            }
+            if (!less(keys[best], ties[best], key, tie)) {
+                break;
+            }
+            move(best, p);
+            p = best;
+        }
+        heap[p] = id;
+        keys[p] = key;
+        ties[p] = tie;
+        position[id] = p;
+    }
+
+    private boolean less(double key, double tie, int p) {
+        return less(key, tie, keys[p], ties[p]);
+    }
+
+    private static boolean less(double key, double tie, double otherKey, double otherTie) {
+        return key < otherKey || (key == otherKey && tie < otherTie);
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        ties[to] = ties[from];
+        position[heap[to]] = to;
+    }
+}
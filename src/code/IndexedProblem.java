@@ -0,0 +1,19 @@
+package code;
+
+/**
+ * Optional extension of {@link Problem} for state spaces that can be numbered
+ * densely (see {@link IndexedGraph}).
+ *
+ * When a problem implements this interface, GenericSearch keeps its
+ * bookkeeping (g-values, back-pointers, closed list) in primitive arrays
+ * indexed by state id instead of hashing states into maps and sets.
+ */
+public interface IndexedProblem<State, Action> extends Problem<State, Action>, IndexedGraph<State, Action> {
+
+    /**
+     * Goal test on a state id. Override to avoid materialising the state.
+     */
+    default boolean isGoalIndex(int index) {
+        return isGoal(stateAt(index));
+    }
+}
@@ -0,0 +1,751 @@
+package code;
+
+import java.util.*;
+
+/**
+ * Array-backed versions of the GenericSearch strategies for problems that
+ * implement {@link IndexedProblem}.
+ *
+ * States are handled through their dense ids:
+ * - g-values live in a double[] (no boxed Double per state)
+ * - back-pointers live in parent/action arrays (no Node per child)
+ * - the closed list is a long[] bitset (no State hashing)
+ * - BF and DF keep their frontier in an int ring buffer / int stack
+ *
+ * With SearchOptions.Frontier.LAZY the frontier is ordered exactly like the
+ * Node-based versions, so both expand the same nodes and return the same
+ * paths. The indexed heaps use decrease-key instead and keep at most one
+ * entry per state.
+ *
+ * Heuristic values are cached per state id, so a state that is reached
+ * several times costs one Heuristic.h call.
+ */
+final class IndexedSearch<S, A> {
+
+    /** Step-cost bounds above this use a heap instead of buckets. */
+    private static final int MAX_BUCKETS = 1 << 16;
+
+    private final IndexedProblem<S, A> problem;
+    private final double[] g;
+    private final int[] parent;            // null in cost-only searches
+    private final Object[] parentAction;
+    private final long[] closed;   // bit per state id
+    private double[] hCache;       // NaN until h has been evaluated
+    private double costBound = Double.POSITIVE_INFINITY;
+    private int nodesExpanded;
+    private int peakFrontier;
+    private int heuristicCalls;
+
+    private IndexedSearch(IndexedProblem<S, A> problem) {
+        this(problem, SearchOptions.DEFAULT);
+    }
+
+    /**
+     * Best-first searches honour options.costOnly and options.costBound.
+     */
+    private IndexedSearch(IndexedProblem<S, A> problem, SearchOptions options) {
+        int count = problem.stateCount();
+        this.problem = problem;
+        this.g = new double[count];
+        this.parent = options.costOnly ? null : new int[count];
+        this.parentAction = options.costOnly ? null : new Object[count];
+        this.closed = new long[(count + 63) >>> 6];
+        this.costBound = options.costBound;
+        Arrays.fill(g, Double.POSITIVE_INFINITY);
+    }
+
+    static <S, A> GenericSearch.SearchResult<S, A> breadthFirst(IndexedProblem<S, A> problem) {
+        return new IndexedSearch<>(problem).runBreadthFirst();
+    }
+
+    static <S, A> GenericSearch.SearchResult<S, A> depthFirst(IndexedProblem<S, A> problem) {
+        return new IndexedSearch<>(problem).runDepthFirst();
+    }
+
+    static <S, A> GenericSearch.SearchResult<S, A> iterativeDeepening(IndexedProblem<S, A> problem) {
+        return new IndexedSearch<>(problem).runIterativeDeepening();
+    }
+
+    static <S, A> GenericSearch.SearchResult<S, A> idaStar(IndexedProblem<S, A> problem,
+                                                           Heuristic<S> heuristic) {
+        return new IndexedSearch<>(problem).runIdaStar(heuristic);
+    }
+
+    static <S, A> GenericSearch.SearchResult<S, A> uniformCost(IndexedProblem<S, A> problem,
+                                                               SearchOptions options) {
+        return new IndexedSearch<>(problem, options).runBestFirst(null,
+                newFrontier(options.frontier, problem), SearchOptions.TieBreak.NONE);
+    }
+
+    /**
+     * Dial's algorithm: UCS over a circular bucket queue. Requires
+     * problem.integerStepCostBound() >= 0; larger bounds than MAX_BUCKETS
+     * fall back to the heap so the bucket array stays small.
+     */
+    static <S, A> GenericSearch.SearchResult<S, A> bucketUniformCost(IndexedProblem<S, A> problem,
+                                                                     SearchOptions options) {
+        int maxStep = problem.integerStepCostBound();
+        if (maxStep < 0 || maxStep >= MAX_BUCKETS) {
+            return uniformCost(problem, options);
+        }
+        return new IndexedSearch<>(problem, options).runBestFirst(null, new BucketQueue(maxStep + 1),
+                SearchOptions.TieBreak.NONE);
+    }
+
+    static <S, A> GenericSearch.SearchResult<S, A> aStar(IndexedProblem<S, A> problem,
+                                                         Heuristic<S> heuristic,
+                                                         SearchOptions options) {
+        return new IndexedSearch<>(problem, options).runBestFirst(heuristic,
+                newFrontier(options.frontier, problem), options.tieBreak);
+    }
+
+    /**
+     * BFS with an int ring buffer. Every state enters the queue at most once,
+     * so the "explored or in frontier" test of the Node-based version becomes
+     * a single bit.
+     */
+    private GenericSearch.SearchResult<S, A> runBreadthFirst() {
+        IntQueue queue = new IntQueue();
+
+        int root = start();
+        queue.add(root);
+        close(root);
+
+        while (!queue.isEmpty()) {
+            int id = queue.poll();
+
+            if (problem.isGoalIndex(id)) {
+                return found(id);
+            }
+
+            nodesExpanded++;
+
+            problem.forEachSuccessor(id, (action, child, cost) -> {
+                if (!isClosed(child)) {
+                    close(child);
+                    g[child] = g[id] + cost;
+                    parent[child] = id;
+                    parentAction[child] = action;
+                    queue.add(child);
+                }
+            });
+            peakFrontier = Math.max(peakFrontier, queue.size());
+        }
+
+        return notFound();
+    }
+
+    /**
+     * DFS over an explicit stack of (state, parent, action, g) entries. Like
+     * the Node-based version a state may be stacked several times before it
+     * is expanded; the entry popped first wins, so back-pointers are set on
+     * pop rather than on push. Children are stacked in reverse successor
+     * order so the first successor is expanded first.
+     */
+    private GenericSearch.SearchResult<S, A> runDepthFirst() {
+        DepthStack stack = new DepthStack();
+
+        int root = start();
+        stack.push(root, -1, null, 0, 0);
+
+        while (stack.size() > 0) {
+            int top = stack.size() - 1;
+            int id = stack.ids[top];
+            if (problem.isGoalIndex(id) || !isClosed(id)) {
+                parent[id] = stack.parents[top];
+                parentAction[id] = stack.actions[top];
+                g[id] = stack.costs[top];
+            }
+            stack.pop();
+
+            if (problem.isGoalIndex(id)) {
+                return found(id);
+            }
+
+            if (isClosed(id)) {
+                continue;
+            }
+
+            close(id);
+            nodesExpanded++;
+
+            int first = stack.size();
+            problem.forEachSuccessor(id, (action, child, stepCost) -> {
+                if (!isClosed(child)) {
+                    stack.push(child, id, action, g[id] + stepCost, 0);
+                }
+            });
+            stack.reverse(first);
+            peakFrontier = Math.max(peakFrontier, stack.size());
+        }
+
+        return notFound();
+    }
+
+    /**
+     * Iterative deepening over the DF entry stack. Within one iteration a
+     * state is expanded again only when reached at a strictly smaller depth
+     * (minDepth table), which prunes everything the old state@depth string
+     * keys pruned and more, yet finds the same shallowest goal. Iterations
+     * stop once no node was cut off by the depth limit.
+     */
+    private GenericSearch.SearchResult<S, A> runIterativeDeepening() {
+        int[] minDepth = new int[g.length];
+        DepthStack stack = new DepthStack();
+        int root = start();
+
+        for (int limit = 0; ; limit++) {
+            Arrays.fill(minDepth, Integer.MAX_VALUE);
+            boolean cutOff = false;
+            stack.push(root, -1, null, 0, 0);
+
+            while (stack.size() > 0) {
+                int top = stack.size() - 1;
+                int id = stack.ids[top];
+                int depth = stack.depths[top];
+
+                if (problem.isGoalIndex(id)) {
+                    parent[id] = stack.parents[top];
+                    parentAction[id] = stack.actions[top];
+                    g[id] = stack.costs[top];
+                    return found(id);
+                }
+                if (depth >= limit) {
+                    cutOff = true;
+                    stack.pop();
+                    continue;
+                }
+                if (depth >= minDepth[id]) {
+                    stack.pop();
+                    continue;
+                }
+
+                minDepth[id] = depth;
+                parent[id] = stack.parents[top];
+                parentAction[id] = stack.actions[top];
+                g[id] = stack.costs[top];
+                stack.pop();
+                nodesExpanded++;
+
+                int first = stack.size();
+                problem.forEachSuccessor(id, (action, child, stepCost) ->
+                        stack.push(child, id, action, g[id] + stepCost, depth + 1));
+                stack.reverse(first);
+                peakFrontier = Math.max(peakFrontier, stack.size());
+            }
+
+            if (!cutOff) {
+                return notFound();
+            }
+        }
+    }
+
+    /**
+     * IDA*: depth-first iterations bounded by f = g + h, each bound being the
+     * smallest f that exceeded the previous one. The search state is the
+     * current path (path ids and one successor buffer per depth, reused
+     * across expansions and iterations) plus the g array, reset each
+     * iteration: a state reached again without a smaller g is skipped. On a
+     * grid plain IDA* re-walks every equal-cost detour, which grows
+     * exponentially with the path length; the g check also rules out
+     * cycles. peakFrontier reports the deepest path.
+     */
+    private GenericSearch.SearchResult<S, A> runIdaStar(Heuristic<S> heuristic) {
+        hCache = new double[g.length];
+        Arrays.fill(hCache, Double.NaN);
+        Successors successors = new Successors();
+        int[] path = new int[64];
+
+        int root = start();
+        if (problem.isGoalIndex(root)) {
+            return found(root);
+        }
+        double bound = h(heuristic, root);
+
+        while (true) {
+            double nextBound = Double.POSITIVE_INFINITY;
+            Arrays.fill(g, Double.POSITIVE_INFINITY);
+            g[root] = 0;
+            int depth = 0;
+            path[0] = root;
+            successors.fill(0, root);
+            nodesExpanded++;
+
+            while (depth >= 0) {
+                if (successors.next[depth] == successors.count[depth]) {
+                    depth--;
+                    continue;
+                }
+                int i = successors.next[depth]++;
+                int child = successors.ids[depth][i];
+                double cost = g[path[depth]] + successors.costs[depth][i];
+                if (cost >= g[child]) {
+                    continue;
+                }
+
+                double f = cost + h(heuristic, child);
+                if (f > bound) {
+                    nextBound = Math.min(nextBound, f);
+                    continue;
+                }
+
+                g[child] = cost;
+                parent[child] = path[depth];
+                parentAction[child] = successors.actions[depth][i];
+                if (problem.isGoalIndex(child)) {
+                    return found(child);
+                }
+
+                depth++;
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth] = child;
+                successors.fill(depth, child);
+                nodesExpanded++;
+                peakFrontier = Math.max(peakFrontier, depth + 1);
+            }
+
+            if (nextBound == Double.POSITIVE_INFINITY) {
+                return notFound();
+            }
+            bound = nextBound;
+        }
+    }
+
+    /**
+     * Successor lists of the states on the IDA* path, one buffer per depth.
+     */
+    private final class Successors implements IndexedTransitionVisitor<A> {
+        int[][] ids = new int[64][];
+        Object[][] actions = new Object[64][];
+        double[][] costs = new double[64][];
+        int[] count = new int[64];
+        int[] next = new int[64];
+        private int depth;
+
+        void fill(int depth, int id) {
+            if (depth == ids.length) {
+                ids = Arrays.copyOf(ids, depth * 2);
+                actions = Arrays.copyOf(actions, depth * 2);
+                costs = Arrays.copyOf(costs, depth * 2);
+                count = Arrays.copyOf(count, depth * 2);
+                next = Arrays.copyOf(next, depth * 2);
+            }
+            if (ids[depth] == null) {
+                ids[depth] = new int[8];
+                actions[depth] = new Object[8];
+                costs[depth] = new double[8];
+            }
+            this.depth = depth;
+            count[depth] = 0;
+            next[depth] = 0;
+            problem.forEachSuccessor(id, this);
+        }
+
+        @Override
+        public void visit(A action, int other, double cost) {
+            int k = count[depth];
+            if (k == ids[depth].length) {
+                ids[depth] = Arrays.copyOf(ids[depth], k * 2);
+                actions[depth] = Arrays.copyOf(actions[depth], k * 2);
+                costs[depth] = Arrays.copyOf(costs[depth], k * 2);
+            }
+            ids[depth][k] = other;
+            actions[depth][k] = action;
+            costs[depth][k] = cost;
+            count[depth] = k + 1;
+        }
+    }
+
+    /**
+     * UCS (heuristic == null) or A*. A state is re-pushed only when its
+     * g-value strictly improves; with the lazy heap the entries left behind by
+     * an improvement are recognised through the closed bit and skipped.
+     */
+    private GenericSearch.SearchResult<S, A> runBestFirst(Heuristic<S> heuristic, Frontier frontier,
+                                                          SearchOptions.TieBreak tieBreak) {
+        if (heuristic != null) {
+            hCache = new double[g.length];
+            Arrays.fill(hCache, Double.NaN);
+        }
+
+        int root = start();
+        frontier.push(h(heuristic, root), 0, root);
+
+        while (!frontier.isEmpty()) {
+            int id = frontier.pop();
+
+            // The popped key is the smallest f left and at least g + h of id
+            if (g[id] + h(heuristic, id) > costBound) {
+                return new GenericSearch.SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY,
+                        nodesExpanded, peakFrontier, heuristicCalls, true);
+            }
+
+            if (problem.isGoalIndex(id)) {
+                return found(id);
+            }
+
+            if (isClosed(id)) {
+                continue;
+            }
+
+            close(id);
+            nodesExpanded++;
+
+            problem.forEachSuccessor(id, (action, child, cost) -> {
+                double newCost = g[id] + cost;
+                if (newCost < g[child]) {
+                    g[child] = newCost;
+                    if (parent != null) {
+                        parent[child] = id;
+                        parentAction[child] = action;
+                    }
+                    reopen(child);
+                    frontier.push(newCost + h(heuristic, child), tie(tieBreak, newCost), child);
+                }
+            });
+            peakFrontier = Math.max(peakFrontier, frontier.size());
+        }
+
+        return notFound();
+    }
+
+    private double h(Heuristic<S> heuristic, int id) {
+        if (heuristic == null) {
+            return 0;
+        }
+        double value = hCache[id];
+        if (Double.isNaN(value)) {
+            value = heuristic.h(problem.stateAt(id));
+            hCache[id] = value;
+            heuristicCalls++;
+        }
+        return value;
+    }
+
+    /**
+     * Secondary frontier key; smaller pops first.
+     */
+    private static double tie(SearchOptions.TieBreak tieBreak, double cost) {
+        switch (tieBreak) {
+            case LARGER_G:
+                return -cost;
+            case SMALLER_G:
+                return cost;
+            default:
+                return 0;
+        }
+    }
+
+    private boolean isClosed(int id) {
+        return (closed[id >>> 6] & (1L << id)) != 0;
+    }
+
+    private void close(int id) {
+        closed[id >>> 6] |= 1L << id;
+    }
+
+    private void reopen(int id) {
+        closed[id >>> 6] &= ~(1L << id);
+    }
+
+    private int start() {
+        int root = problem.indexOf(problem.initialState());
+        g[root] = 0;
+        if (parent != null) {
+            parent[root] = -1;
+        }
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private GenericSearch.SearchResult<S, A> found(int goal) {
+        List<A> path = new ArrayList<>();
+        for (int id = goal; parent != null && parent[id] != -1; id = parent[id]) {
+            path.add((A) parentAction[id]);
+        }
+        Collections.reverse(path);
+        return new GenericSearch.SearchResult<>(path, g[goal], nodesExpanded, peakFrontier, heuristicCalls);
+    }
+
+    private GenericSearch.SearchResult<S, A> notFound() {
+        return new GenericSearch.SearchResult<>(new ArrayList<>(), Double.POSITIVE_INFINITY,
+                nodesExpanded, peakFrontier, heuristicCalls);
+    }
+
+    private static Frontier newFrontier(SearchOptions.Frontier type, IndexedProblem<?, ?> problem) {
+        switch (type) {
+            case LAZY:
+                return new LazyHeap();
+            case BINARY_HEAP:
+                return new DecreaseKeyHeap(new IndexedHeap(problem.stateCount(), 2));
+            case QUATERNARY_HEAP:
+                return new DecreaseKeyHeap(new IndexedHeap(problem.stateCount(), 4));
+            default:
+                throw new IllegalArgumentException("Unknown frontier: " + type);
+        }
+    }
+
+    /**
+     * Priority queue of state ids as seen by runBestFirst.
+     */
+    private interface Frontier {
+        boolean isEmpty();
+
+        int size();
+
+        void push(double key, double tie, int id);
+
+        int pop();
+    }
+
+    /**
+     * Growable int FIFO over a power-of-two ring.
+     */
+    private static final class IntQueue {
+        private int[] ring = new int[1024];
+        private int head;
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(int id) {
+            if (size == ring.length) {
+                int[] grown = new int[ring.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = ring[(head + i) & (ring.length - 1)];
+                }
+                ring = grown;
+                head = 0;
+            }
+            ring[(head + size) & (ring.length - 1)] = id;
+            size++;
+        }
+
+        int poll() {
+            int id = ring[head];
+            head = (head + 1) & (ring.length - 1);
+            size--;
+            return id;
+        }
+    }
+
+    /**
+     * Growable stack of DF / ID entries in parallel arrays.
+     */
+    private static final class DepthStack {
+        int[] ids = new int[256];
+        int[] parents = new int[256];
+        Object[] actions = new Object[256];
+        double[] costs = new double[256];
+        int[] depths = new int[256];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void push(int id, int parent, Object action, double cost, int depth) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                parents = Arrays.copyOf(parents, size * 2);
+                actions = Arrays.copyOf(actions, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
+                depths = Arrays.copyOf(depths, size * 2);
+            }
+            ids[size] = id;
+            parents[size] = parent;
+            actions[size] = action;
+            costs[size] = cost;
+            depths[size] = depth;
+            size++;
+        }
+
+        void pop() {
+            actions[--size] = null;
+        }
+
+        /**
+         * Reverse the entries pushed since size() was first.
+         */
+        void reverse(int first) {
+            for (int i = first, j = size - 1; i < j; i++, j--) {
+                int id = ids[i];
+                ids[i] = ids[j];
+                ids[j] = id;
+                int p = parents[i];
+                parents[i] = parents[j];
+                parents[j] = p;
+                Object a = actions[i];
+                actions[i] = actions[j];
+                actions[j] = a;
+                double c = costs[i];
+                costs[i] = costs[j];
+                costs[j] = c;
+                int d = depths[i];
+                depths[i] = depths[j];
+                depths[j] = d;
+            }
+        }
+    }
+
+    private static final class DecreaseKeyHeap implements Frontier {
+        private final IndexedHeap heap;
+
+        DecreaseKeyHeap(IndexedHeap heap) {
+            this.heap = heap;
+        }
+
+        public boolean isEmpty() {
+            return heap.isEmpty();
+        }
+
+        public int size() {
+            return heap.size();
+        }
+
+        public void push(double key, double tie, int id) {
+            heap.insertOrDecrease(id, key, tie);
+        }
+
+        public int pop() {
+            return heap.pop();
+        }
+    }
+
+    /**
+     * Circular bucket queue for integer keys (Dial). With step costs in
+     * [0, C] every queued key lies in [cost, cost + C], so C + 1 buckets
+     * indexed by key % (C + 1) never mix two different keys. Push is O(1);
+     * pop scans at most C empty buckets. Entries made stale by an improvement
+     * stay in their bucket and are skipped through the closed bit. Only used
+     * for UCS, so the tie value is ignored.
+     */
+    private static final class BucketQueue implements Frontier {
+        private final int[][] buckets;
+        private final int[] sizes;
+        private long cost;   // key of the bucket being drained
+        private int size;
+
+        BucketQueue(int count) {
+            buckets = new int[count][];
+            sizes = new int[count];
+            for (int i = 0; i < count; i++) {
+                buckets[i] = new int[16];
+            }
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void push(double key, double tie, int id) {
+            int b = (int) ((long) key % buckets.length);
+            if (sizes[b] == buckets[b].length) {
+                buckets[b] = Arrays.copyOf(buckets[b], sizes[b] * 2);
+            }
+            buckets[b][sizes[b]++] = id;
+            size++;
+        }
+
+        public int pop() {
+            int b = (int) (cost % buckets.length);
+            while (sizes[b] == 0) {
+                cost++;
+                b = (int) (cost % buckets.length);
+            }
+            size--;
+            return buckets[b][--sizes[b]];
+        }
+    }
+
+    /**
+     * Binary min-heap of (key, tie, id) triples. Sift-up/sift-down follow
+     * java.util.PriorityQueue step for step, so ties are broken the same way
+     * as in the Node-based searches.
+     */
+    private static final class LazyHeap implements Frontier {
+        private double[] keys = new double[64];
+        private double[] ties = new double[64];
+        private int[] ids = new int[64];
+        private int size;
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void push(double key, double tie, int id) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                ties = Arrays.copyOf(ties, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int k = size++;
+            while (k > 0) {
+                int p = (k - 1) >>> 1;
+                if (compare(key, tie, p) >= 0) {
+                    break;
+                }
+                set(k, p);
+                k = p;
+            }
+            keys[k] = key;
+            ties[k] = tie;
+            ids[k] = id;
+        }
+
+        public int pop() {
+            int result = ids[0];
+            int n = --size;
+            if (n > 0) {
+                double key = keys[n];
+                double tie = ties[n];
+                int id = ids[n];
+                int k = 0;
+                int half = n >>> 1;
+                while (k < half) {
+                    int c = 2 * k + 1;
+                    int r = c + 1;
+                    if (r < n && compare(keys[c], ties[c], r) > 0) {
+                        c = r;
+                    }
+                    if (compare(key, tie, c) <= 0) {
+                        break;
+                    }
+                    set(k, c);
+                    k = c;
+                }
+                keys[k] = key;
+                ties[k] = tie;
+                ids[k] = id;
+            }
+            return result;
+        }
+
+        private int compare(double key, double tie, int p) {
+            int c = Double.compare(key, keys[p]);
+            return c != 0 ? c : Double.compare(tie, ties[p]);
+        }
+
+        private void set(int to, int from) {
+            keys[to] = keys[from];
+            ties[to] = ties[from];
+            ids[to] = ids[from];
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package code;
+
+/**
+ * Callback receiving the transitions of a state in index space.
+ *
+ * @param <Action> action type of the problem
+ */
+@FunctionalInterface
+public interface IndexedTransitionVisitor<Action> {
+
+    /**
+     * @param action the action labelling the edge
+     * @param other id of the state at the other end of the edge
+     * @param cost step cost of the edge
+     */
+    void visit(Action action, int other, double cost);
+}
@@ -0,0 +1,278 @@
+package code;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * H3: ALT heuristic (A*, Landmarks, Triangle inequality)
+ *
+ * A few landmark cells L are chosen up front, and exact shortest-path costs
+ * d(L, v) and d(v, L) are computed for every cell v over the real traffic
+ * and tunnel edges. For any state s and goal t the triangle inequality gives
+ *
+ *   d(s, t) >= d(L, t) - d(L, s)   and   d(s, t) >= d(s, L) - d(t, L)
+ *
+ * and h(s) is the largest of these bounds over all landmarks (at least 0).
+ *
+ * ADMISSIBILITY / CONSISTENCY:
+ * - each bound is a difference of exact distances, so it never overestimates
+ * - for an edge (u, v) each bound changes by at most c(u, v), so h is also
+ *   consistent; bounds involving an unreachable landmark are skipped, and a
+ *   bound defined at u is always defined at v, which keeps consistency
+ *
+ * Unlike H1/H2 the bounds see congestion: on a grid where most traffic is
+ * 3 or 4, Manhattan x 1 badly underestimates while the landmark bounds are
+ * usually close to the true cost.
+ *
+ * Tables are two int arrays of K * cells entries. Step costs must be
+ * integers (traffic levels and tunnel lengths are).
+ */
+public class LandmarkHeuristic implements GoalHeuristic {
+
+    /**
+     * How landmarks are placed.
+     */
+    public enum Selection {
+        FARTHEST,  // each landmark is the cell farthest from those chosen so far
+        RANDOM     // uniformly random cells (seeded)
+    }
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final IndexedGraph<State, ?> graph;
+    private final int cells;
+    private final int[] landmarks;     // landmark cell ids
+    private final int[] fromLandmark;  // [k * cells + v] = d(L_k, v)
+    private final int[] toLandmark;    // [k * cells + v] = d(v, L_k)
+    private final Selection selection;
+    private final long preprocessingNanos;
+
+    /**
+     * Select landmarks and compute their distance tables.
+     *
+     * @param graph the grid; traffic and tunnels are read through its
+     *              successor and predecessor visitors
+     * @param count number of landmarks K (clamped to the number of cells)
+     * @param selection landmark placement policy
+     * @param seed random seed (start cell for FARTHEST, cells for RANDOM)
+     */
+    public <A> LandmarkHeuristic(BidirectionalGraph<State, A> graph, int count, Selection selection, long seed) {
+        if (graph.integerStepCostBound() < 0) {
+            throw new IllegalArgumentException("Landmark tables need integer step costs");
+        }
+        long startTime = System.nanoTime();
+
+        this.graph = graph;
+        this.cells = graph.stateCount();
+        this.selection = selection;
+        int k = Math.max(0, Math.min(count, cells));
+        this.landmarks = new int[k];
+        this.fromLandmark = new int[k * cells];
+        this.toLandmark = new int[k * cells];
+
+        Random random = new Random(seed);
+        int[] scratch = new int[cells];
+        int[] nearest = new int[cells];   // min over chosen landmarks of d(L, v)
+        Arrays.fill(nearest, INF);
+        if (selection == Selection.FARTHEST && k > 0) {
+            // The first landmark is the cell farthest from a random start
+            distances(graph, random.nextInt(cells), true, scratch, 0);
+            System.arraycopy(scratch, 0, nearest, 0, cells);
+        }
+
+        for (int i = 0; i < k; i++) {
+            int landmark = selection == Selection.RANDOM
+                    ? randomCell(random, i)
+                    : farthest(nearest);
+            landmarks[i] = landmark;
+            distances(graph, landmark, true, fromLandmark, i * cells);
+            distances(graph, landmark, false, toLandmark, i * cells);
+
+            if (i == 0 && selection == Selection.FARTHEST) {
+                Arrays.fill(nearest, INF);
+            }
+            for (int v = 0; v < cells; v++) {
+                nearest[v] = Math.min(nearest[v], fromLandmark[i * cells + v]);
+            }
+            nearest[landmark] = 0;
+        }
+
+        this.preprocessingNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Heuristic over tables loaded by {@link #read}.
+     */
+    private LandmarkHeuristic(IndexedGraph<State, ?> graph, Selection selection, int[] landmarks,
+                              int[] fromLandmark, int[] toLandmark, long preprocessingNanos) {
+        this.graph = graph;
+        this.cells = graph.stateCount();
+        this.selection = selection;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+        this.preprocessingNanos = preprocessingNanos;
+    }
+
+    /**
+     * Artifact sections: landmark ids, d(L, v) table, d(v, L) table.
+     */
+    public void write(ArtifactStore.Writer out) throws IOException {
+        out.putInts(landmarks);
+        out.putInts(fromLandmark);
+        out.putInts(toLandmark);
+    }
+
+    /**
+     * Tables written by {@link #write} for the same graph; throws
+     * IOException if their sizes do not match it.
+     */
+    public static LandmarkHeuristic read(ArtifactStore.Reader in, IndexedGraph<State, ?> graph,
+                                         Selection selection) throws IOException {
+        long startTime = System.nanoTime();
+        int cells = graph.stateCount();
+        int[] landmarks = in.ints();
+        int[] from = in.ints();
+        int[] to = in.ints();
+        if ((long) landmarks.length * cells != from.length || from.length != to.length) {
+            throw new IOException("landmark tables do not match a grid of " + cells + " cells");
+        }
+        for (int landmark : landmarks) {
+            if (landmark < 0 || landmark >= cells) {
+                throw new IOException("landmark " + landmark + " out of range");
+            }
+        }
+        return new LandmarkHeuristic(graph, selection, landmarks, from, to, System.nanoTime() - startTime);
+    }
+
+    private int randomCell(Random random, int chosen) {
+        while (true) {
+            int cell = random.nextInt(cells);
+            boolean taken = false;
+            for (int i = 0; i < chosen; i++) {
+                taken |= landmarks[i] == cell;
+            }
+            if (!taken) {
+                return cell;
+            }
+        }
+    }
+
+    /**
+     * Cell with the largest distance; unreachable cells count as farthest, so
+     * every component of a fragmented grid gets a landmark first.
+     */
+    private static int farthest(int[] nearest) {
+        int best = 0;
+        for (int v = 1; v < nearest.length; v++) {
+            if (nearest[v] > nearest[best]) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Dijkstra from source over forward edges (d(source, v)) or reversed
+     * edges (d(v, source)), written to out[offset + v].
+     */
+    private static <A> void distances(BidirectionalGraph<State, A> graph, int source, boolean forward,
+                                      int[] out, int offset) {
+        int cells = graph.stateCount();
+        Arrays.fill(out, offset, offset + cells, INF);
+        Relaxer<A> relaxer = new Relaxer<>(new IndexedHeap(cells, 4), out, offset);
+        out[offset + source] = 0;
+        relaxer.heap.insertOrDecrease(source, 0);
+
+        while (!relaxer.heap.isEmpty()) {
+            relaxer.from = relaxer.heap.pop();
+            if (forward) {
+                graph.forEachSuccessor(relaxer.from, relaxer);
+            } else {
+                graph.forEachPredecessor(relaxer.from, relaxer);
+            }
+        }
+    }
+
+    /**
+     * Edge relaxation for {@link #distances}; from is the settled cell.
+     */
+    private static final class Relaxer<A> implements IndexedTransitionVisitor<A> {
+        final IndexedHeap heap;
+        final int[] dist;
+        final int offset;
+        int from;
+
+        Relaxer(IndexedHeap heap, int[] dist, int offset) {
+            this.heap = heap;
+            this.dist = dist;
+            this.offset = offset;
+        }
+
+        @Override
+        public void visit(A action, int other, double cost) {
+            int d = dist[offset + from] + (int) cost;
+            if (d < dist[offset + other]) {
+                dist[offset + other] = d;
+                heap.insertOrDecrease(other, d);
+            }
+        }
+    }
+
+    /**
+     * Reads d(L_k, goal) and d(goal, L_k) once; the tables are shared.
+     */
+    @Override
+    public Heuristic<State> forGoal(State goal, List<Tunnel> tunnels) {
+        int t = graph.indexOf(goal);
+        int[] goalFrom = new int[landmarks.length];
+        int[] goalTo = new int[landmarks.length];
+        for (int i = 0; i < landmarks.length; i++) {
+            goalFrom[i] = fromLandmark[i * cells + t];
+            goalTo[i] = toLandmark[i * cells + t];
+        }
+        return s -> h(goalFrom, goalTo, s);
+    }
+
+    private double h(int[] goalFrom, int[] goalTo, State s) {
+        int v = graph.indexOf(s);
+        int best = 0;
+        for (int i = 0; i < landmarks.length; i++) {
+            int fromS = fromLandmark[i * cells + v];
+            if (fromS != INF && goalFrom[i] != INF) {
+                best = Math.max(best, goalFrom[i] - fromS);
+            }
+            int toS = toLandmark[i * cells + v];
+            if (toS != INF && goalTo[i] != INF) {
+                best = Math.max(best, toS - goalTo[i]);
+            }
+        }
+        return best;
+    }
+
+    public List<State> getLandmarks() {
+        List<State> result = new ArrayList<>();
+        for (int landmark : landmarks) {
+            result.add(graph.stateAt(landmark));
+        }
+        return result;
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    /**
+     * Time spent choosing landmarks and filling the distance tables (or
+     * loading them, see read).
+     */
+    public long getPreprocessingMillis() {
+        return preprocessingNanos / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "LandmarkHeuristic(k=" + landmarks.length + ", " + selection
+                + ", preprocessing=" + getPreprocessingMillis() + "ms)";
+    }
+}
@@ -51,6 +51,10 @@ public class Main {
         System.out.println("Available strategies:");
         System.out.println("  - 'all'  : Run all 8 strategies");
         System.out.println("  - Single : BF, DF, ID, UC, GR1, GR2, AS1, AS2");
+        System.out.println("  - Extra  : UCB (bucket-queue UC), BUC, BAS1, BAS2 (bidirectional), IDA1, IDA2 (IDA*),");
+        System.out.println("             GR3, AS3 (landmark heuristic), GR4, AS4 (portal-graph heuristic),");
+        System.out.println("             CH (contraction hierarchy), HPA (hierarchical, near-optimal),");
+        System.out.println("             APSP (all-pairs distance oracle, small grids)");
         System.out.println("  - Multiple: e.g., 'BF UC AS1' (space-separated)");
         System.out.print("\nYour choice: ");
         String strategyInput = scanner.nextLine().trim();
@@ -240,6 +244,10 @@ public class Main {
                          " (" + leastNodes.nodesExpanded + " nodes)");
         System.out.println("✨ Best Cost:        " + optimal.strategy + 
                          " (cost = " + optimal.totalCost + ")");
+        if (results.containsKey("HPA") && results.containsKey("UC") && results.get("UC").totalCost > 0) {
+            System.out.printf("📐 HPA vs UC:        %.3f x optimal cost%n",
+                             (double) results.get("HPA").totalCost / results.get("UC").totalCost);
+        }
         
         System.out.println("\n💡 Overall Recommendation:");
         if (results.containsKey("AS1") || results.containsKey("AS2")) {
@@ -14,25 +14,13 @@ import java.util.List;
  * - Therefore, h(n) = Manhattan(n, goal) ≤ actual cost
  * - This heuristic is admissible and guarantees optimal solutions with A*
  */
-public class ManhattanHeuristic implements Heuristic<State> {
-    private State goal;
-    private List<Tunnel> tunnels;
-
-    /**
-     * Set the goal state for heuristic calculations
-     */
-    public void setGoal(State goal, List<Tunnel> tunnels) {
-        this.goal = goal;
-        this.tunnels = tunnels;
-    }
+public class ManhattanHeuristic implements GoalHeuristic {
 
     @Override
-    public double h(State s) {
-        if (goal == null) return 0;
-        
+    public Heuristic<State> forGoal(State goal, List<Tunnel> tunnels) {
         // Pure Manhattan distance (always admissible with traffic >= 1)
         // Formula: |x1 - x2| + |y1 - y2|
-        return Math.abs(s.x - goal.x) + Math.abs(s.y - goal.y);
+        return s -> Math.abs(s.x - goal.x) + Math.abs(s.y - goal.y);
     }
 
     @Override
@@ -7,16 +7,29 @@ public class Node<State, Action> {
     public final Action action;
     public final int depth;
     public final double pathCost;  // g(n)
+    public final double h;         // h(n), evaluated once when the node is generated
+    public final double f;         // f(n) = g(n) + h(n)
 
     public Node(State state,
                 Node<State, Action> parent,
                 Action action,
                 int depth,
                 double pathCost) {
+        this(state, parent, action, depth, pathCost, 0);
+    }
+
+    public Node(State state,
+                Node<State, Action> parent,
+                Action action,
+                int depth,
+                double pathCost,
+                double h) {
         this.state = state;
         this.parent = parent;
         this.action = action;
         this.depth = depth;
         this.pathCost = pathCost;
+        this.h = h;
+        this.f = pathCost + h;
     }
 }
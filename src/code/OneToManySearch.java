@@ -0,0 +1,182 @@
+package code;
+
+import java.util.*;
+
+/**
+ * Dijkstra from one source that stops once every target is settled, so one
+ * search fills a whole row (or column) of a cost matrix instead of one
+ * search per pair.
+ *
+ * DIRECTION:
+ * - forward: follows successors; cost(i) is source -> target i
+ * - reverse: follows predecessors; cost(i) is target i -> source
+ *
+ * With parent trees kept, path(i) rebuilds the route for target i as a
+ * SearchResult in forward action order (target -> source when reversed).
+ * Without them only the costs are available.
+ *
+ * When the problem's strongly connected components are given, targets the
+ * search cannot reach are left at infinity instead of being waited for,
+ * so one unreachable customer does not exhaust the grid.
+ */
+public final class OneToManySearch<S, A> {
+
+    private final BidirectionalGraph<S, A> problem;
+    private final boolean reverse;
+    private final int source;
+    private final int[] targets;
+    private final double[] costs;
+    private final int[] parent;         // next state toward the source, null without trees
+    private final Object[] action;      // forward action of the tree edge at each state
+    private final int nodesExpanded;
+
+    public OneToManySearch(BidirectionalGraph<S, A> problem, S source, List<S> targets,
+                           boolean reverse, boolean keepParents, StronglyConnectedComponents components) {
+        this.problem = problem;
+        this.reverse = reverse;
+        this.source = problem.indexOf(source);
+        int count = problem.stateCount();
+        this.targets = new int[targets.size()];
+        this.costs = new double[targets.size()];
+        this.parent = keepParents ? new int[count] : null;
+        this.action = keepParents ? new Object[count] : null;
+
+        // Targets still to settle; duplicates count once
+        boolean[] pending = new boolean[count];
+        int remaining = 0;
+        for (int i = 0; i < this.targets.length; i++) {
+            int target = problem.indexOf(targets.get(i));
+            this.targets[i] = target;
+            boolean reachable = components == null || (reverse
+                    ? components.canReach(target, this.source)
+                    : components.canReach(this.source, target));
+            if (reachable && !pending[target]) {
+                pending[target] = true;
+                remaining++;
+            }
+        }
+
+        double[] dist = new double[count];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[count];
+        IndexedHeap heap = new IndexedHeap(count, 4);
+        Relax relax = new Relax(dist, settled, heap);
+        dist[this.source] = 0;
+        heap.insertOrDecrease(this.source, 0);
+        if (parent != null) {
+            parent[this.source] = -1;
+        }
+
+        int expanded = 0;
+        while (remaining > 0 && !heap.isEmpty()) {
+            int v = heap.pop();
+            settled[v] = true;
+            if (pending[v]) {
+                pending[v] = false;
+                remaining--;
+                if (remaining == 0) break;
+            }
+            expanded++;
+            relax.from = v;
+            if (reverse) {
+                problem.forEachPredecessor(v, relax);
+            } else {
+                problem.forEachSuccessor(v, relax);
+            }
+        }
+        this.nodesExpanded = expanded;
+        for (int i = 0; i < this.targets.length; i++) {
+            costs[i] = settled[this.targets[i]] ? dist[this.targets[i]] : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Relaxes the edges of one settled state.
+     */
+    private final class Relax implements IndexedTransitionVisitor<A> {
+        final double[] dist;
+        final boolean[] settled;
+        final IndexedHeap heap;
+        int from;
+
+        Relax(double[] dist, boolean[] settled, IndexedHeap heap) {
+            this.dist = dist;
+            this.settled = settled;
+            this.heap = heap;
+        }
+
+        @Override
+        public void visit(A edgeAction, int other, double cost) {
+            if (settled[other]) return;
+            double g = dist[from] + cost;
+            if (g < dist[other]) {
+                dist[other] = g;
+                heap.insertOrDecrease(other, g);
+                if (parent != null) {
+                    parent[other] = from;
+                    action[other] = edgeAction;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return targets.length;
+    }
+
+    /**
+     * Cost between the source and target i (in list order); infinite when
+     * no path exists.
+     */
+    public double cost(int i) {
+        return costs[i];
+    }
+
+    public double[] costs() {
+        return costs.clone();
+    }
+
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    public boolean hasParents() {
+        return parent != null;
+    }
+
+    /**
+     * States popped and expanded before every target was settled.
+     */
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * Route for target i, read from the parent tree: source -> target when
+     * forward, target -> source when reversed. nodesExpanded is that of the
+     * whole one-to-many search.
+     */
+    @SuppressWarnings("unchecked")
+    public GenericSearch.SearchResult<S, A> path(int i) {
+        if (parent == null) {
+            throw new IllegalStateException("Parent trees were not kept");
+        }
+        List<A> actions = new ArrayList<>();
+        if (costs[i] == Double.POSITIVE_INFINITY) {
+            return new GenericSearch.SearchResult<>(actions, Double.POSITIVE_INFINITY, nodesExpanded);
+        }
+        for (int v = targets[i]; v != source; v = parent[v]) {
+            actions.add((A) action[v]);
+        }
+        if (!reverse) {
+            Collections.reverse(actions);
+        }
+        return new GenericSearch.SearchResult<>(actions, costs[i], nodesExpanded);
+    }
+
+    @Override
+    public String toString() {
+        return "OneToManySearch(" + (reverse ? "reverse" : "forward") + " from " + problem.stateAt(source)
+                + ", " + targets.length + " targets, " + nodesExpanded + " expanded)";
+    }
+}
@@ -0,0 +1,173 @@
+package code;
+
+import java.util.*;
+
+/**
+ * Bounded cache of search results between grid cells, shared by every
+ * planner of one DeliverySearch (see DeliverySearch.getPathCache).
+ *
+ * KEYS pack (start id, goal id, result class) into one long. The class is
+ * EXACT for a cost every cost-optimal strategy agrees on, so UC, AS1, AS2,
+ * ... share one entry when only the cost is wanted; a strategy's own route
+ * (its actions and node count) is kept under a class of its own.
+ *
+ * EVICTION is least-recently-used by weight: an entry weighs one plus the
+ * number of its actions, and the oldest entries go once the total exceeds
+ * maxWeight.
+ *
+ * Entries belong to one graph version: a lookup or insert with another
+ * version (the traffic changed) empties the cache first. All methods are
+ * synchronized, and cached results hold a read-only copy of their actions,
+ * so callers and threads sharing an entry cannot change it.
+ */
+public final class PathCache {
+
+    /** Result class of exact costs, shared by all cost-optimal strategies. */
+    public static final int EXACT = 0;
+
+    public static final long DEFAULT_MAX_WEIGHT = 1L << 20;
+
+    private static final int ID_BITS = 29;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    private final long maxWeight;
+    private final LinkedHashMap<Long, GenericSearch.SearchResult<State, Action>> entries =
+            new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public PathCache() {
+        this(DEFAULT_MAX_WEIGHT);
+    }
+
+    public PathCache(long maxWeight) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Cache weight must be positive: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Class of the cost a strategy returns: EXACT for cost-optimal ones.
+     */
+    public static int costClass(Strategy strategy) {
+        return strategy.isCostOptimal() ? EXACT : routeClass(strategy);
+    }
+
+    /**
+     * Class of a strategy's own route.
+     */
+    public static int routeClass(Strategy strategy) {
+        return 1 + strategy.ordinal();
+    }
+
+    /**
+     * Packed key; state ids must be below 2^29.
+     */
+    public static long key(int start, int goal, int resultClass) {
+        if (start < 0 || goal < 0 || start > ID_MASK || goal > ID_MASK) {
+            throw new IllegalArgumentException("State ids out of range: " + start + ", " + goal);
+        }
+        return (long) resultClass << (2 * ID_BITS) | (long) start << ID_BITS | goal;
+    }
+
+    /**
+     * Cached result, or null (a miss).
+     */
+    public synchronized GenericSearch.SearchResult<State, Action> get(long key, long graphVersion) {
+        checkVersion(graphVersion);
+        GenericSearch.SearchResult<State, Action> result = entries.get(key);
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Cache a result under key and return the cached copy, whose actions
+     * are read-only.
+     */
+    public synchronized GenericSearch.SearchResult<State, Action> put(long key, long graphVersion,
+                                                                      GenericSearch.SearchResult<State, Action> found) {
+        checkVersion(graphVersion);
+        GenericSearch.SearchResult<State, Action> result = new GenericSearch.SearchResult<>(
+                Collections.unmodifiableList(new ArrayList<>(found.actions)), found.cost, found.nodesExpanded,
+                found.peakFrontier, found.heuristicCalls, found.boundExceeded);
+        GenericSearch.SearchResult<State, Action> old = entries.put(key, result);
+        if (old != null) {
+            weight -= weightOf(old);
+        }
+        weight += weightOf(result);
+        Iterator<GenericSearch.SearchResult<State, Action>> eldest = entries.values().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            GenericSearch.SearchResult<State, Action> evicted = eldest.next();
+            if (evicted == result) break;   // keep the entry just added
+            eldest.remove();
+            weight -= weightOf(evicted);
+            evictions++;
+        }
+        return result;
+    }
+
+    private static long weightOf(GenericSearch.SearchResult<State, Action> result) {
+        return 1L + result.actions.size();
+    }
+
+    private void checkVersion(long graphVersion) {
+        if (graphVersion != version) {
+            if (!entries.isEmpty()) {
+                invalidations++;
+            }
+            entries.clear();
+            weight = 0;
+            version = graphVersion;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PathCache(" + entries.size() + " entries, weight " + weight + "/" + maxWeight
+                + ", hits " + hits + ", misses " + misses + ", evictions " + evictions
+                + ", invalidations " + invalidations + ")";
+    }
+}
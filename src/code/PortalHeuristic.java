@@ -0,0 +1,214 @@
+package code;
+
+import java.util.*;
+
+/**
+ * H4: Portal-Graph Heuristic
+ *
+ * H2 considers paths through at most one tunnel. This heuristic also bounds
+ * paths that chain several tunnels: the goal and all tunnel endpoints
+ * ("portals") form a small complete graph in which
+ * - any two portals are joined by a road lower bound R(p, q)
+ * - the two ends of a tunnel are also joined by the tunnel cost
+ * and forGoal runs Dijkstra on it to get bound(p), a lower bound on the cost
+ * from portal p to the goal. Then
+ *
+ *   h(s) = min over portals p (goal included, bound 0) of R(s, p) + bound(p)
+ *
+ * R is {@link TrafficBounds#lowerBound}: Manhattan x minTraffic for uniform
+ * bounds, or the region-aware sum of the cheapest roads across every row and
+ * column boundary on the way (what DeliverySearch uses).
+ *
+ * ADMISSIBILITY: any real path splits into road stretches (each costs at
+ * least R) and tunnels between portals, so it is never cheaper than the
+ * matching path in the portal graph.
+ *
+ * CONSISTENCY: every term changes by at most the cost of a road step. For
+ * a tunnel u -> v, bound(u) <= cost(u, v) + R(v, q) + bound(q) for the
+ * portal q realising h(v), so h(u) <= cost(u, v) + h(v).
+ *
+ * On grids of at most TrafficAwareHeuristic.TABLE_MAX_CELLS cells h is a
+ * per-cell table (TrafficBounds.distanceTransform); otherwise h loops over
+ * the portals that can beat the direct bound. Portals and tables are kept
+ * for the last few goals (GoalCache); unit bounds skip the portal graph.
+ */
+public class PortalHeuristic implements GoalHeuristic {
+
+    private final TrafficBounds bounds;
+    private final boolean useTable;
+
+    // Portal bounds and tables of recent goals
+    private final GoalCache<Goal> goals = new GoalCache<>();
+
+    /**
+     * @param minTraffic smallest traffic level of the grid (at least 1)
+     * @param m grid rows
+     * @param n grid columns
+     */
+    public PortalHeuristic(int minTraffic, int m, int n) {
+        this(TrafficBounds.uniform(m, n, minTraffic));
+    }
+
+    public PortalHeuristic(TrafficBounds bounds) {
+        this.bounds = bounds;
+        this.useTable = (long) bounds.m * bounds.n <= TrafficAwareHeuristic.TABLE_MAX_CELLS;
+    }
+
+    public TrafficBounds getBounds() {
+        return bounds;
+    }
+
+    @Override
+    public Heuristic<State> forGoal(State goal, List<Tunnel> tunnels) {
+        Goal cached = goals.get(goal, tunnels);
+        if (cached == null) {
+            // Built outside the lock; two threads may both build a new goal
+            cached = new Goal(goal, tunnels);
+            goals.put(goal, tunnels, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * The portal bounds (and table) of one goal; never changes once built.
+     */
+    private final class Goal implements Heuristic<State> {
+        final State[] portals;   // goal and useful tunnel endpoints
+        final int[] bound;
+        final int[] table;
+
+        Goal(State goal, List<Tunnel> tunnels) {
+            List<State> all = new ArrayList<>();
+            int[] dist;
+            if (bounds.isUnit()) {
+                // No tunnel beats the direct bound; the goal is the only portal
+                all.add(goal);
+                dist = new int[1];
+            } else {
+                dist = portalBounds(goal, tunnels, bounds, all);
+            }
+
+            // Keep the goal and the portals that beat the direct bound
+            State[] kept = new State[all.size()];
+            int[] keptBound = new int[all.size()];
+            int count = 0;
+            for (int p = 0; p < all.size(); p++) {
+                if (p == 0 || dist[p] < roadBound(bounds, all.get(p), goal)) {
+                    kept[count] = all.get(p);
+                    keptBound[count] = dist[p];
+                    count++;
+                }
+            }
+            portals = Arrays.copyOf(kept, count);
+            bound = Arrays.copyOf(keptBound, count);
+
+            // The goal alone is the direct bound, already O(1)
+            if (useTable && count > 1 && portalsInGrid(portals)) {
+                int[] cells = new int[count];
+                for (int i = 0; i < count; i++) {
+                    cells[i] = portals[i].x * bounds.n + portals[i].y;
+                }
+                table = bounds.distanceTransform(cells, bound);
+            } else {
+                table = null;
+            }
+        }
+
+        @Override
+        public double h(State s) {
+            if (table != null && bounds.contains(s)) {
+                return table[s.x * bounds.n + s.y];
+            }
+            int best = Integer.MAX_VALUE;
+            for (int i = 0; i < bound.length; i++) {
+                best = Math.min(best, roadBound(bounds, s, portals[i]) + bound[i]);
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Dijkstra towards the goal on the portal graph. Fills portals with the
+     * goal followed by the distinct tunnel endpoints and returns, per
+     * portal, a lower bound on its cost to the goal.
+     */
+    static int[] portalBounds(State goal, List<Tunnel> tunnels, TrafficBounds bounds, List<State> portals) {
+        Map<State, Integer> ids = new HashMap<>();
+        ids.put(goal, 0);
+        portals.add(goal);
+        List<int[]> tunnelEdges = new ArrayList<>();
+        for (Tunnel t : tunnels == null ? Collections.<Tunnel>emptyList() : tunnels) {
+            int a = ids.computeIfAbsent(t.from, s -> { portals.add(s); return portals.size() - 1; });
+            int b = ids.computeIfAbsent(t.to, s -> { portals.add(s); return portals.size() - 1; });
+            tunnelEdges.add(new int[]{a, b, (int) t.getCost()});
+        }
+        int count = portals.size();
+        int[][] tunnelCost = new int[count][];
+        for (int[] edge : tunnelEdges) {
+            addTunnel(tunnelCost, edge[0], edge[1], edge[2]);
+            addTunnel(tunnelCost, edge[1], edge[0], edge[2]);
+        }
+
+        // Dense Dijkstra over reversed edges: dist[v] = cost from v to the goal
+        int[] dist = new int[count];
+        boolean[] done = new boolean[count];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        dist[0] = 0;
+        for (int round = 0; round < count; round++) {
+            int u = -1;
+            for (int v = 0; v < count; v++) {
+                if (!done[v] && (u < 0 || dist[v] < dist[u])) {
+                    u = v;
+                }
+            }
+            done[u] = true;
+            State pu = portals.get(u);
+            for (int v = 0; v < count; v++) {
+                if (!done[v]) {
+                    dist[v] = Math.min(dist[v], roadBound(bounds, portals.get(v), pu) + dist[u]);
+                }
+            }
+            if (tunnelCost[u] != null) {
+                // Tunnels are symmetric, so u's tunnels also lead into u
+                for (int i = 0; i < tunnelCost[u].length; i += 2) {
+                    int v = tunnelCost[u][i];
+                    dist[v] = Math.min(dist[v], tunnelCost[u][i + 1] + dist[u]);
+                }
+            }
+        }
+        return dist;
+    }
+
+    private static void addTunnel(int[][] tunnelCost, int from, int to, int cost) {
+        int[] current = tunnelCost[from] == null ? new int[0] : tunnelCost[from];
+        int[] grown = Arrays.copyOf(current, current.length + 2);
+        grown[current.length] = to;
+        grown[current.length + 1] = cost;
+        tunnelCost[from] = grown;
+    }
+
+    /**
+     * Road lower bound from a to b; cells off the grid (from malformed
+     * tunnels) fall back to the cheapest road per step.
+     */
+    static int roadBound(TrafficBounds bounds, State a, State b) {
+        if (bounds.contains(a) && bounds.contains(b)) {
+            return bounds.lowerBound(a, b);
+        }
+        return (Math.abs(a.x - b.x) + Math.abs(a.y - b.y)) * bounds.minStep();
+    }
+
+    private boolean portalsInGrid(State[] portals) {
+        for (State portal : portals) {
+            if (!bounds.contains(portal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "PortalHeuristic(" + bounds + ")";
+    }
+}
@@ -1,16 +1,11 @@
 package code;
 
-import java.util.List;
-
-public interface Problem<State, Action> {
+/**
+ * One search on a {@link Graph}: where it starts and when it is done.
+ */
+public interface Problem<State, Action> extends Graph<State, Action> {
 
     State initialState();
 
     boolean isGoal(State state);
-
-    List<Action> actions(State state);
-
-    State result(State state, Action action);
-
-    double stepCost(State state, Action action, State nextState);
 }
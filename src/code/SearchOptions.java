@@ -0,0 +1,84 @@
+package code;
+
+/**
+ * Tuning options for GenericSearch.
+ *
+ * Options change how a strategy runs, never which cost it is supposed to
+ * find. Instances are immutable; derive variants with the with... methods.
+ */
+public final class SearchOptions {
+
+    /**
+     * Frontier used by UC/AS1/AS2 on indexed problems.
+     */
+    public enum Frontier {
+        LAZY,             // binary heap, stale duplicates skipped on poll
+        BINARY_HEAP,      // indexed binary heap with decrease-key
+        QUATERNARY_HEAP   // indexed 4-ary heap with decrease-key
+    }
+
+    /**
+     * Order among A* frontier entries with equal f. Preferring the larger g
+     * pops the entry closer to the goal first, which usually ends A* earlier
+     * on grids full of equal-f ties. Greedy and UC ignore it.
+     */
+    public enum TieBreak {
+        NONE,        // heap order only
+        LARGER_G,    // deeper entries first
+        SMALLER_G    // shallower entries first
+    }
+
+    public static final SearchOptions DEFAULT =
+            new SearchOptions(Frontier.QUATERNARY_HEAP, TieBreak.LARGER_G, false, Double.POSITIVE_INFINITY);
+
+    public final Frontier frontier;
+    public final TieBreak tieBreak;
+
+    /**
+     * Return only cost and statistics, with an empty action list. UC, UCB,
+     * A* and the bidirectional searches on indexed problems then skip the
+     * parent tree (no per-state back-pointer arrays, no path walk); other
+     * strategies still return their path.
+     */
+    public final boolean costOnly;
+
+    /**
+     * Give up once no path within this cost is left: UC, UCB and A*
+     * (indexed or not) stop when the smallest g or f on the frontier
+     * exceeds it, the bidirectional searches when their combined lower
+     * bound does. They then return no path with SearchResult.boundExceeded
+     * set. Infinite by default; BF, DF, ID, greedy and IDA* ignore it, as
+     * do the CH, HPA and APSP table queries. Used by the planner to cut off
+     * trucks that cannot beat the best one found so far.
+     */
+    public final double costBound;
+
+    private SearchOptions(Frontier frontier, TieBreak tieBreak, boolean costOnly, double costBound) {
+        this.frontier = frontier;
+        this.tieBreak = tieBreak;
+        this.costOnly = costOnly;
+        this.costBound = costBound;
+    }
+
+    public SearchOptions withFrontier(Frontier frontier) {
+        return new SearchOptions(frontier, tieBreak, costOnly, costBound);
+    }
+
+    public SearchOptions withTieBreak(TieBreak tieBreak) {
+        return new SearchOptions(frontier, tieBreak, costOnly, costBound);
+    }
+
+    public SearchOptions withCostOnly(boolean costOnly) {
+        return new SearchOptions(frontier, tieBreak, costOnly, costBound);
+    }
+
+    public SearchOptions withCostBound(double costBound) {
+        return new SearchOptions(frontier, tieBreak, costOnly, costBound);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchOptions[frontier=" + frontier + ", tieBreak=" + tieBreak + ", costOnly=" + costOnly
+                + ", costBound=" + costBound + "]";
+    }
+}
@@ -1,14 +1,54 @@
 package code;
 
 public enum Strategy {
-    BF,   // Breadth-First
-    DF,   // Depth-First
-    ID,   // Iterative Deepening
-    UC,   // Uniform Cost
-    GR1,  // Greedy with heuristic 1
-    GR2,  // Greedy with heuristic 2
-    AS1,  // A* with heuristic 1
-    AS2;  // A* with heuristic 2
+    BF(0),   // Breadth-First
+    DF(0),   // Depth-First
+    ID(0),   // Iterative Deepening
+    UC(0),   // Uniform Cost
+    GR1(1),  // Greedy with heuristic 1
+    GR2(2),  // Greedy with heuristic 2
+    AS1(1),  // A* with heuristic 1
+    AS2(2),  // A* with heuristic 2
+    UCB(0),  // Uniform Cost with a bucket queue (integer step costs)
+    BUC(0),  // Bidirectional Uniform Cost
+    BAS1(1), // Bidirectional A* with heuristic 1
+    BAS2(2), // Bidirectional A* with heuristic 2
+    IDA1(1), // Iterative deepening A* with heuristic 1
+    IDA2(2), // Iterative deepening A* with heuristic 2
+    GR3(3),  // Greedy with heuristic 3 (landmarks)
+    AS3(3),  // A* with heuristic 3 (landmarks)
+    GR4(4),  // Greedy with heuristic 4 (portal graph)
+    AS4(4),  // A* with heuristic 4 (portal graph)
+    CH(0),   // Contraction hierarchy query (preprocessed once per grid)
+    HPA(0),  // Hierarchical path-finding over grid clusters (near-optimal)
+    APSP(0); // All-pairs distance oracle lookup (preprocessed once per grid)
+
+    /** Which heuristic the strategy uses (1-based), 0 for uninformed. */
+    public final int heuristic;
+
+    Strategy(int heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Whether the strategy always returns a cheapest path, so its costs can
+     * be replaced by those of any other exact search.
+     */
+    public boolean isCostOptimal() {
+        switch (this) {
+            case BF:
+            case DF:
+            case ID:
+            case GR1:
+            case GR2:
+            case GR3:
+            case GR4:
+            case HPA:
+                return false;
+            default:
+                return true;
+        }
+    }
 
     public static Strategy fromString(String s) {
         return Strategy.valueOf(s.toUpperCase());
@@ -0,0 +1,297 @@
+package code;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Strongly connected components of an {@link IndexedGraph}'s directed
+ * graph, for rejecting unreachable goals before any search runs.
+ *
+ * The successor lists are copied once into CSR arrays, then an iterative
+ * Tarjan DFS (explicit call stack, no recursion) numbers the components.
+ * Tarjan emits a component only after every component it can reach, so
+ * component ids are a reverse topological order: a state can only reach
+ * components with an id no larger than its own.
+ *
+ * REACHABILITY:
+ * - same component: reachable
+ * - target component has a larger id: unreachable
+ * - otherwise, if there are at most CLOSURE_MAX_COMPONENTS components, the
+ *   transitive closure of the component DAG (one bitset per component)
+ *   answers exactly; on larger condensations canReach is conservative and
+ *   answers true
+ *
+ * All answers are O(1). The graph is read once, at construction.
+ */
+public final class StronglyConnectedComponents {
+
+    /** Largest condensation for which the transitive closure is stored. */
+    public static final int CLOSURE_MAX_COMPONENTS = 4096;
+
+    private final int[] component;      // component id per state
+    private final int componentCount;
+    private final int[] componentSize;
+    private final long[][] closure;     // closure[c] = components reachable from c, or null
+    private final long preprocessingNanos;
+
+    public <A> StronglyConnectedComponents(IndexedGraph<?, A> graph) {
+        long startTime = System.nanoTime();
+        int count = graph.stateCount();
+
+        // Successor lists as CSR arrays
+        int[] offsets = new int[count + 1];
+        Targets<A> targets = new Targets<>(4 * count);
+        for (int v = 0; v < count; v++) {
+            offsets[v] = targets.size;
+            graph.forEachSuccessor(v, targets);
+        }
+        offsets[count] = targets.size;
+
+        this.component = new int[count];
+        this.componentCount = tarjan(count, offsets, targets.data, component);
+        this.componentSize = new int[componentCount];
+        for (int v = 0; v < count; v++) {
+            componentSize[component[v]]++;
+        }
+        this.closure = componentCount <= CLOSURE_MAX_COMPONENTS
+                ? closure(count, offsets, targets.data)
+                : null;
+        this.preprocessingNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Components loaded by {@link #read}.
+     */
+    private StronglyConnectedComponents(int[] component, int componentCount, long[][] closure,
+                                        long preprocessingNanos) {
+        this.component = component;
+        this.componentCount = componentCount;
+        this.componentSize = new int[componentCount];
+        for (int c : component) {
+            componentSize[c]++;
+        }
+        this.closure = closure;
+        this.preprocessingNanos = preprocessingNanos;
+    }
+
+    /**
+     * Artifact sections: component id per state, then the closure bitsets
+     * one after another (empty without a closure).
+     */
+    public void write(ArtifactStore.Writer out) throws IOException {
+        out.putInts(component);
+        if (closure == null) {
+            out.putLongs(new long[0]);
+            return;
+        }
+        int words = (componentCount + 63) >>> 6;
+        long[] flat = new long[componentCount * words];
+        for (int c = 0; c < componentCount; c++) {
+            System.arraycopy(closure[c], 0, flat, c * words, words);
+        }
+        out.putLongs(flat);
+    }
+
+    /**
+     * Components written by {@link #write} for a graph with stateCount
+     * states; throws IOException if the sections do not fit.
+     */
+    public static StronglyConnectedComponents read(ArtifactStore.Reader in, int stateCount) throws IOException {
+        long startTime = System.nanoTime();
+        int[] component = in.ints();
+        long[] flat = in.longs();
+        if (component.length != stateCount) {
+            throw new IOException("component ids for " + component.length + " states, expected " + stateCount);
+        }
+        int count = 0;
+        for (int c : component) {
+            if (c < 0 || c >= stateCount) {
+                throw new IOException("component id " + c + " out of range");
+            }
+            count = Math.max(count, c + 1);
+        }
+        long[][] closure = null;
+        if (flat.length > 0) {
+            int words = (count + 63) >>> 6;
+            if (flat.length != (long) count * words) {
+                throw new IOException("closure does not match " + count + " components");
+            }
+            closure = new long[count][];
+            for (int c = 0; c < count; c++) {
+                closure[c] = Arrays.copyOfRange(flat, c * words, (c + 1) * words);
+            }
+        }
+        return new StronglyConnectedComponents(component, count, closure, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Collects successor ids into one growing array.
+     */
+    private static final class Targets<A> implements IndexedTransitionVisitor<A> {
+        int[] data;
+        int size;
+
+        Targets(int capacity) {
+            this.data = new int[Math.max(16, capacity)];
+        }
+
+        @Override
+        public void visit(A action, int other, double cost) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = other;
+        }
+    }
+
+    /**
+     * Iterative Tarjan. Fills component[] and returns the number of
+     * components; ids follow completion order (sinks first).
+     */
+    private static int tarjan(int count, int[] offsets, int[] targets, int[] component) {
+        int[] index = new int[count];       // DFS discovery number + 1, 0 = unvisited
+        int[] low = new int[count];
+        int[] next = new int[count];        // next edge to scan per state
+        int[] stack = new int[count];       // Tarjan stack
+        int[] calls = new int[count];       // DFS call stack
+        boolean[] onStack = new boolean[count];
+        Arrays.fill(component, -1);
+        int counter = 0;
+        int stackSize = 0;
+        int components = 0;
+
+        for (int root = 0; root < count; root++) {
+            if (index[root] != 0) continue;
+            int depth = 0;
+            calls[depth++] = root;
+            index[root] = low[root] = ++counter;
+            next[root] = offsets[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int v = calls[depth - 1];
+                if (next[v] < offsets[v + 1]) {
+                    int w = targets[next[v]++];
+                    if (index[w] == 0) {
+                        index[w] = low[w] = ++counter;
+                        next[w] = offsets[w];
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        calls[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                // All edges of v scanned: pop v, emit its component if it is a root
+                depth--;
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component[w] = components;
+                    } while (w != v);
+                    components++;
+                }
+                if (depth > 0) {
+                    int parent = calls[depth - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Reachable components per component. Every condensation edge goes to
+     * a smaller id, so processing ids in increasing order sees each
+     * successor's set complete.
+     */
+    private long[][] closure(int count, int[] offsets, int[] targets) {
+        int words = (componentCount + 63) >>> 6;
+        long[][] reach = new long[componentCount][words];
+        // States grouped by component, to visit components in id order
+        int[] start = new int[componentCount + 1];
+        for (int c = 0; c < componentCount; c++) {
+            start[c + 1] = start[c] + componentSize[c];
+        }
+        int[] members = new int[count];
+        int[] fill = Arrays.copyOf(start, componentCount);
+        for (int v = 0; v < count; v++) {
+            members[fill[component[v]]++] = v;
+        }
+
+        for (int c = 0; c < componentCount; c++) {
+            long[] bits = reach[c];
+            bits[c >>> 6] |= 1L << c;
+            for (int i = start[c]; i < start[c + 1]; i++) {
+                int v = members[i];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int d = component[targets[e]];
+                    if (d != c && (bits[d >>> 6] & (1L << d)) == 0) {
+                        long[] other = reach[d];
+                        for (int w = 0; w < words; w++) {
+                            bits[w] |= other[w];
+                        }
+                    }
+                }
+            }
+        }
+        return reach;
+    }
+
+    /**
+     * Whether a path from state id from to state id to may exist. False is
+     * always exact; true is exact unless the condensation was too large for
+     * the closure (see hasClosure).
+     */
+    public boolean canReach(int from, int to) {
+        int a = component[from];
+        int b = component[to];
+        if (a == b) return true;
+        if (b > a) return false;
+        return closure == null || (closure[a][b >>> 6] & (1L << b)) != 0;
+    }
+
+    public int componentOf(int state) {
+        return component[state];
+    }
+
+    public int componentCount() {
+        return componentCount;
+    }
+
+    public int componentSize(int componentId) {
+        return componentSize[componentId];
+    }
+
+    /**
+     * Id of the component with the most states (the "main road network").
+     */
+    public int largestComponent() {
+        int best = 0;
+        for (int c = 1; c < componentCount; c++) {
+            if (componentSize[c] > componentSize[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    public boolean hasClosure() {
+        return closure != null;
+    }
+
+    public long getPreprocessingMillis() {
+        return preprocessingNanos / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "StronglyConnectedComponents(" + componentCount + " components, largest "
+                + (componentCount == 0 ? 0 : componentSize[largestComponent()])
+                + " states, closure=" + hasClosure() + ")";
+    }
+}
@@ -1,6 +1,6 @@
 package code;
 
-import java.util.List;
+import java.util.*;
 
 /**
  * H2: Traffic-Aware Manhattan Heuristic
@@ -30,76 +30,166 @@ import java.util.List;
  * 
  * IMPLEMENTATION NOTES:
  * ---------------------
- * - minTraffic is set to 1 (minimum possible traffic level)
- * - This ensures we never underestimate (which would be inadmissible)
- * - We never overestimate (which guarantees optimality with A*)
+ * - Step costs are bounded by a TrafficBounds. fromStrings calibrates it on
+ *   the parsed grid (cheapest road per direction), so on congested grids the
+ *   bound is minTraffic x Manhattan with minTraffic > 1
+ * - With a step bound above 1 a tunnel exit may be followed by further
+ *   tunnels, so exit-to-goal costs come from the portal graph of
+ *   PortalHeuristic (chained tunnels included) to stay admissible
+ * - With a step bound of 1 everywhere no tunnel can beat the direct
+ *   bound (TrafficBounds.isUnit), so the portal graph is skipped
+ * - forGoal precomputes the goal-dependent tunnel terms; on small
+ *   grids it also fills a per-cell table of h. Both are kept for the
+ *   last few goals (GoalCache), also across threads
  */
-public class TrafficAwareHeuristic implements Heuristic<State> {
-    private State goal;
-    private List<Tunnel> tunnels;
-    private final int minTraffic;
+public class TrafficAwareHeuristic implements GoalHeuristic {
+
+    /** Largest grid (in cells) for which per-goal tables are built. */
+    public static final int TABLE_MAX_CELLS = 1 << 18;
+
+    private final TrafficBounds bounds;
+    private final boolean useTables;
+
+    // Tunnel terms and tables of recent goals
+    private final GoalCache<Goal> goals = new GoalCache<>();
 
     /**
      * Constructor
      * @param minTraffic the minimum traffic level in the grid (typically 1)
      */
     public TrafficAwareHeuristic(int minTraffic) {
-        this.minTraffic = Math.max(1, minTraffic);
+        this(TrafficBounds.uniform(0, 0, minTraffic));
     }
 
     /**
-     * Set the goal state for heuristic calculations
+     * Heuristic for an m x n grid with the same bound minTraffic per step.
      */
-    public void setGoal(State goal, List<Tunnel> tunnels) {
-        this.goal = goal;
-        this.tunnels = tunnels;
+    public TrafficAwareHeuristic(int minTraffic, int m, int n) {
+        this(TrafficBounds.uniform(m, n, minTraffic));
+    }
+
+    /**
+     * Heuristic over the given step bounds. If the grid has at most
+     * TABLE_MAX_CELLS cells, forGoal fills a table of h for every cell
+     * (cached for the last few goals), so h is a single array read.
+     */
+    public TrafficAwareHeuristic(TrafficBounds bounds) {
+        this.bounds = bounds;
+        this.useTables = bounds.m > 0 && bounds.n > 0 && (long) bounds.m * bounds.n <= TABLE_MAX_CELLS;
+    }
+
+    public int getMinTraffic() {
+        return bounds.minStep();
     }
 
+    public TrafficBounds getBounds() {
+        return bounds;
+    }
+
+    /**
+     * The tunnel terms that only depend on the goal are computed here, once
+     * per goal while it stays in the cache.
+     */
     @Override
-    public double h(State s) {
-        if (goal == null) return 0;
-        
-        // Direct path cost (minimum cost per edge = minTraffic)
-        double manhattanDist = Math.abs(s.x - goal.x) + Math.abs(s.y - goal.y);
-        double bestCost = manhattanDist * minTraffic;
-        
-        // Check if any tunnel provides a better path
-        if (tunnels != null && !tunnels.isEmpty()) {
-            for (Tunnel t : tunnels) {
-                // Path via tunnel: state → tunnel entrance → tunnel exit → goal
-                
-                // Option 1: Enter from 'from', exit at 'to'
-                double toFrom = manhattan(s, t.from) * minTraffic;
-                double tunnelCost = t.getCost(); // Tunnel cost is already Manhattan distance
-                double toGoalFromTo = manhattan(t.to, goal) * minTraffic;
-                double viaFromTo = toFrom + tunnelCost + toGoalFromTo;
-                
-                // Option 2: Enter from 'to', exit at 'from'
-                double toTo = manhattan(s, t.to) * minTraffic;
-                double toGoalFromFrom = manhattan(t.from, goal) * minTraffic;
-                double viaToFrom = toTo + tunnelCost + toGoalFromFrom;
-                
-                // Take the better of the two tunnel directions
-                double viaTunnel = Math.min(viaFromTo, viaToFrom);
-                
-                // Update best cost if this tunnel is better
-                bestCost = Math.min(bestCost, viaTunnel);
-            }
+    public Heuristic<State> forGoal(State goal, List<Tunnel> tunnels) {
+        Goal cached = goals.get(goal, tunnels);
+        if (cached == null) {
+            // Built outside the lock; two threads may both build a new goal
+            cached = new Goal(goal, tunnels);
+            goals.put(goal, tunnels, cached);
         }
-        
-        return bestCost;
+        return cached;
     }
 
     /**
-     * Calculate Manhattan distance between two states
+     * The tunnel terms (and table) of one goal; never changes once built.
      */
-    private double manhattan(State s1, State s2) {
-        return Math.abs(s1.x - s2.x) + Math.abs(s1.y - s2.y);
+    private final class Goal implements Heuristic<State> {
+        final State goal;
+
+        // Entering at entries[i] costs roadBound(s, entry) + exitCost[i] to
+        // reach the goal. Tunnels that can never beat the direct bound are
+        // left out.
+        final State[] entries;
+        final int[] exitCost;
+        final int[] table;
+
+        Goal(State goal, List<Tunnel> tunnels) {
+            this.goal = goal;
+
+            // Keep an entry only if it can beat the direct bound somewhere: if
+            // exitCost >= roadBound(entry, goal), the triangle inequality makes
+            // the tunnel term >= the direct term for every state.
+            List<State> portals = new ArrayList<>();
+            int[] dist = bounds.isUnit() ? new int[1] : PortalHeuristic.portalBounds(goal, tunnels, bounds, portals);
+            State[] keptEntries = new State[portals.size()];
+            int[] keptCost = new int[portals.size()];
+            int kept = 0;
+            for (int p = 1; p < portals.size(); p++) {
+                State entry = portals.get(p);
+                if (dist[p] < PortalHeuristic.roadBound(bounds, entry, goal)) {
+                    keptEntries[kept] = entry;
+                    keptCost[kept] = dist[p];
+                    kept++;
+                }
+            }
+            entries = Arrays.copyOf(keptEntries, kept);
+            exitCost = Arrays.copyOf(keptCost, kept);
+
+            // Without entries h is the direct bound, already O(1)
+            table = useTables && kept > 0 && entriesInGrid() ? buildTable() : null;
+        }
+
+        private boolean entriesInGrid() {
+            if (!bounds.contains(goal)) {
+                return false;
+            }
+            for (State entry : entries) {
+                if (!bounds.contains(entry)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * h for every cell: the goal and each tunnel entry are sources with
+         * their own start cost (see TrafficBounds.distanceTransform).
+         */
+        private int[] buildTable() {
+            int n = bounds.n;
+            int[] cells = new int[entries.length + 1];
+            int[] costs = new int[entries.length + 1];
+            cells[0] = goal.x * n + goal.y;
+            for (int i = 0; i < entries.length; i++) {
+                cells[i + 1] = entries[i].x * n + entries[i].y;
+                costs[i + 1] = exitCost[i];
+            }
+            return bounds.distanceTransform(cells, costs);
+        }
+
+        @Override
+        public double h(State s) {
+            if (table != null && bounds.contains(s)) {
+                return table[s.x * bounds.n + s.y];
+            }
+
+            // Direct path cost (cheapest road per step)
+            int bestCost = PortalHeuristic.roadBound(bounds, s, goal);
+
+            // Path via tunnel: state → tunnel entrance → tunnel exit → goal,
+            // with the exit → goal part precomputed per goal
+            for (int i = 0; i < entries.length; i++) {
+                bestCost = Math.min(bestCost, PortalHeuristic.roadBound(bounds, s, entries[i]) + exitCost[i]);
+            }
+
+            return bestCost;
+        }
     }
 
     @Override
     public String toString() {
-        return "TrafficAwareHeuristic(minTraffic=" + minTraffic + ")";
+        return "TrafficAwareHeuristic(" + bounds + ")";
     }
 
     /**
@@ -107,7 +197,7 @@ public class TrafficAwareHeuristic implements Heuristic<State> {
      */
     public String getDescription() {
         return "Traffic-Aware Manhattan Heuristic with Tunnel Consideration\n" +
-               "- Base: Manhattan distance × minimum traffic level\n" +
+               "- Base: Manhattan distance × minimum traffic level (per direction)\n" +
                "- Enhancement: Considers tunnel shortcuts\n" +
                "- Admissible: Never overestimates actual path cost\n" +
                "- More informed than pure Manhattan distance";
@@ -0,0 +1,211 @@
+package code;
+
+import java.util.Arrays;
+
+/**
+ * Lower bounds on road travel cost in an m x n grid, derived from the actual
+ * traffic levels instead of the worst case of 1 per step.
+ *
+ * Every road path from row a down to row b > a crosses each boundary between
+ * rows x and x + 1 (a <= x < b) with at least one DOWN move, so it costs at
+ * least the sum of the cheapest DOWN roads across those boundaries; the same
+ * holds for UP, LEFT and RIGHT. Vertical and horizontal moves are disjoint,
+ * so the two sums add up. Prefix sums make lowerBound O(1).
+ *
+ * Without region awareness every boundary uses the cheapest road of its
+ * direction in the whole grid (per-direction minima). A boundary with no open
+ * road in a direction also falls back to that minimum, which keeps bounds
+ * finite (tunnels may still lead across).
+ *
+ * lowerBound is consistent: one road move changes it by at most its cost.
+ */
+public final class TrafficBounds {
+
+    public final int m;
+    public final int n;
+
+    // Cheapest open road per direction over the whole grid (UP, DOWN, LEFT, RIGHT)
+    private final int[] minByDirection;
+
+    // down[x] = cost to go from row 0 down to row x; up[x] = from row x up to row 0.
+    // right/left are the same for columns.
+    private final int[] down;
+    private final int[] up;
+    private final int[] right;
+    private final int[] left;
+
+    private TrafficBounds(int m, int n, int[] minByDirection,
+                          int[] downAcross, int[] upAcross, int[] leftAcross, int[] rightAcross) {
+        this.m = m;
+        this.n = n;
+        this.minByDirection = minByDirection;
+        this.down = prefix(downAcross);
+        this.up = prefix(upAcross);
+        this.right = prefix(rightAcross);
+        this.left = prefix(leftAcross);
+    }
+
+    /**
+     * The same bound for every step: minTraffic x Manhattan distance.
+     */
+    public static TrafficBounds uniform(int m, int n, int minTraffic) {
+        int step = Math.max(1, minTraffic);
+        int[] rows = filled(Math.max(0, m - 1), step);
+        int[] columns = filled(Math.max(0, n - 1), step);
+        return new TrafficBounds(m, n, new int[]{step, step, step, step}, rows, rows, columns, columns);
+    }
+
+    /**
+     * Bounds calibrated on a grid: per-direction minima, or (regionAware)
+     * the cheapest road across each row / column boundary.
+     */
+    public static TrafficBounds of(TrafficGrid grid, boolean regionAware) {
+        int m = grid.m;
+        int n = grid.n;
+        int[] min = new int[4];
+        int[][] across = {
+                new int[Math.max(0, m - 1)],   // UP: from row x + 1 to row x
+                new int[Math.max(0, m - 1)],   // DOWN: from row x to row x + 1
+                new int[Math.max(0, n - 1)],   // LEFT: from column y + 1 to column y
+                new int[Math.max(0, n - 1)]};  // RIGHT: from column y to column y + 1
+        Arrays.fill(min, Integer.MAX_VALUE);
+        for (int[] boundary : across) {
+            Arrays.fill(boundary, Integer.MAX_VALUE);
+        }
+
+        for (int x = 0; x < m; x++) {
+            for (int y = 0; y < n; y++) {
+                int cell = grid.cell(x, y);
+                for (int d = 0; d < 4; d++) {
+                    int level = grid.traffic(cell, d);
+                    if (level == 0 || grid.neighbour(cell, d) < 0) continue;
+                    min[d] = Math.min(min[d], level);
+                    // Boundary index: the smaller row / column of the two cells
+                    int boundary = d < 2 ? Math.min(x, x + TrafficGrid.DX[d]) : Math.min(y, y + TrafficGrid.DY[d]);
+                    across[d][boundary] = Math.min(across[d][boundary], level);
+                }
+            }
+        }
+        int fallback = Integer.MAX_VALUE;
+        for (int d = 0; d < 4; d++) {
+            fallback = Math.min(fallback, min[d]);
+        }
+        fallback = fallback == Integer.MAX_VALUE ? 1 : fallback;
+        for (int d = 0; d < 4; d++) {
+            if (min[d] == Integer.MAX_VALUE) {
+                min[d] = fallback;
+            }
+            for (int i = 0; i < across[d].length; i++) {
+                if (!regionAware || across[d][i] == Integer.MAX_VALUE) {
+                    across[d][i] = min[d];
+                }
+            }
+        }
+        return new TrafficBounds(m, n, min, across[1], across[0], across[2], across[3]);
+    }
+
+    private static int[] filled(int length, int value) {
+        int[] values = new int[length];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    private static int[] prefix(int[] across) {
+        int[] sums = new int[across.length + 1];
+        for (int i = 0; i < across.length; i++) {
+            sums[i + 1] = sums[i] + across[i];
+        }
+        return sums;
+    }
+
+    /**
+     * Lower bound on the cost of a road-only path from (fromX, fromY) to
+     * (toX, toY). Both cells must lie in the grid.
+     */
+    public int lowerBound(int fromX, int fromY, int toX, int toY) {
+        int vertical = toX >= fromX ? down[toX] - down[fromX] : up[fromX] - up[toX];
+        int horizontal = toY >= fromY ? right[toY] - right[fromY] : left[fromY] - left[toY];
+        return vertical + horizontal;
+    }
+
+    public int lowerBound(State from, State to) {
+        return lowerBound(from.x, from.y, to.x, to.y);
+    }
+
+    public boolean contains(State s) {
+        return s.x >= 0 && s.x < m && s.y >= 0 && s.y < n;
+    }
+
+    /**
+     * Cheapest single road of the grid; a bound for cells outside the grid.
+     */
+    public int minStep() {
+        return Math.min(Math.min(minByDirection[0], minByDirection[1]),
+                Math.min(minByDirection[2], minByDirection[3]));
+    }
+
+    /**
+     * True if every bound is one per step, i.e. lowerBound is the Manhattan
+     * distance. A tunnel then costs at least the road bound between its
+     * ends, so no chain of tunnels can beat the direct bound.
+     */
+    public boolean isUnit() {
+        // Boundaries cost at least 1 each, so a sum equal to their count means all are 1
+        return minStep() == 1 && down[down.length - 1] == down.length - 1 && up[up.length - 1] == up.length - 1
+                && right[right.length - 1] == right.length - 1 && left[left.length - 1] == left.length - 1;
+    }
+
+    /**
+     * Bounds of the reversed graph: lowerBound(a, b) of the result equals
+     * lowerBound(b, a) of this one. Used by the backward searches.
+     */
+    public TrafficBounds reversed() {
+        return new TrafficBounds(m, n,
+                new int[]{minByDirection[1], minByDirection[0], minByDirection[3], minByDirection[2]},
+                differences(up), differences(down), differences(right), differences(left));
+    }
+
+    private static int[] differences(int[] sums) {
+        int[] across = new int[sums.length - 1];
+        for (int i = 0; i < across.length; i++) {
+            across[i] = sums[i + 1] - sums[i];
+        }
+        return across;
+    }
+
+    /**
+     * For every cell c, min over sources i of costs[i] + lowerBound(c,
+     * cells[i]). Two raster passes suffice because the bound is separable
+     * into row and column parts: O(m * n) regardless of the source count.
+     */
+    public int[] distanceTransform(int[] cells, int[] costs) {
+        int[] h = new int[m * n];
+        Arrays.fill(h, Integer.MAX_VALUE / 2);
+        for (int i = 0; i < cells.length; i++) {
+            h[cells[i]] = Math.min(h[cells[i]], costs[i]);
+        }
+        // Sources above / to the left: step up or left first
+        for (int x = 0; x < m; x++) {
+            for (int y = 0; y < n; y++) {
+                int cell = x * n + y;
+                if (x > 0) h[cell] = Math.min(h[cell], h[cell - n] + up[x] - up[x - 1]);
+                if (y > 0) h[cell] = Math.min(h[cell], h[cell - 1] + left[y] - left[y - 1]);
+            }
+        }
+        // Sources below / to the right
+        for (int x = m - 1; x >= 0; x--) {
+            for (int y = n - 1; y >= 0; y--) {
+                int cell = x * n + y;
+                if (x < m - 1) h[cell] = Math.min(h[cell], h[cell + n] + down[x + 1] - down[x]);
+                if (y < n - 1) h[cell] = Math.min(h[cell], h[cell + 1] + right[y + 1] - right[y]);
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "TrafficBounds(" + m + "x" + n + ", min UP/DOWN/LEFT/RIGHT = "
+                + Arrays.toString(minByDirection) + ")";
+    }
+}
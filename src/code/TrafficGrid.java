@@ -0,0 +1,185 @@
+package code;
+
+import java.util.Map;
+
+/**
+ * Traffic levels of the grid's road segments, one byte per cell per direction.
+ *
+ * traffic(cell, d) is the cost of moving from cell to its neighbour in
+ * direction d (UP, DOWN, LEFT, RIGHT in that order); 0 means the
+ * road is blocked or absent. Cells are numbered by the grid's CellLayout
+ * (row-major unless another CellOrder is asked for), like DeliverySearch
+ * state ids. A 2000x2000 city takes 16 MB instead of the several hundred MB
+ * of nested HashMaps with boxed Integers.
+ */
+public final class TrafficGrid {
+
+    /** Largest traffic level that fits in a byte. */
+    public static final int MAX_TRAFFIC = 255;
+
+    // Offsets of the UP, DOWN, LEFT, RIGHT neighbours; d ^ 1 is the opposite direction
+    static final int[] DX = {-1, 1, 0, 0};
+    static final int[] DY = {0, 0, -1, 1};
+
+    public final int m;
+    public final int n;
+    private final CellLayout layout;
+    private final byte[] traffic;   // cell * 4 + direction -> level (unsigned)
+    private long version;           // bumped by every change, see getVersion
+
+    public TrafficGrid(int m, int n) {
+        this(CellLayout.rowMajor(m, n));
+    }
+
+    public TrafficGrid(CellLayout layout) {
+        this.m = layout.m;
+        this.n = layout.n;
+        this.layout = layout;
+        this.traffic = new byte[m * n * 4];
+    }
+
+    /**
+     * Copy of this grid with cells numbered in the given order.
+     */
+    public TrafficGrid withOrder(CellOrder order) {
+        TrafficGrid copy = new TrafficGrid(CellLayout.of(m, n, order));
+        for (int x = 0; x < m; x++) {
+            for (int y = 0; y < n; y++) {
+                System.arraycopy(traffic, cell(x, y) * 4, copy.traffic, copy.cell(x, y) * 4, 4);
+            }
+        }
+        return copy;
+    }
+
+    public CellLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Adapter for the nested map representation (from -> to -> traffic).
+     * Entries that are not positive or do not join two adjacent cells of the
+     * grid are ignored, as the search never used them.
+     */
+    public static TrafficGrid fromMap(int m, int n, Map<State, Map<State, Integer>> edgeTraffic) {
+        TrafficGrid grid = new TrafficGrid(m, n);
+        for (Map.Entry<State, Map<State, Integer>> entry : edgeTraffic.entrySet()) {
+            for (Map.Entry<State, Integer> edge : entry.getValue().entrySet()) {
+                if (edge.getValue() > 0) {
+                    grid.set(entry.getKey(), edge.getKey(), edge.getValue());
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Set the traffic of the road from one cell to an adjacent one. A
+     * DeliverySearch over this grid rebuilds what it derived from the old
+     * levels on its next query; do not call this while searches run.
+     *
+     * @return false if the cells are not adjacent cells of the grid
+     * @throws IllegalArgumentException if traffic is outside [0, MAX_TRAFFIC]
+     */
+    public boolean set(State from, State to, int traffic) {
+        if (traffic < 0 || traffic > MAX_TRAFFIC) {
+            throw new IllegalArgumentException("Traffic level must be in [0, " + MAX_TRAFFIC + "]: "
+                    + traffic + " on " + from + " -> " + to);
+        }
+        int d = direction(from, to);
+        if (d < 0 || !contains(from.x, from.y) || !contains(to.x, to.y)) {
+            return false;
+        }
+        int index = cell(from.x, from.y) * 4 + d;
+        if (this.traffic[index] != (byte) traffic) {
+            this.traffic[index] = (byte) traffic;
+            version++;
+        }
+        return true;
+    }
+
+    /**
+     * Number of changes made through set; results cached for one version
+     * (see PathCache) are stale under another.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Traffic of the road leaving cell in direction d, 0 if blocked.
+     */
+    public int traffic(int cell, int d) {
+        return traffic[cell * 4 + d] & 0xFF;
+    }
+
+    /**
+     * Traffic of the road entering cell from its neighbour in direction d,
+     * 0 if blocked or if there is no such neighbour.
+     */
+    public int reverseTraffic(int cell, int d) {
+        int neighbour = neighbour(cell, d);
+        return neighbour < 0 ? 0 : traffic(neighbour, d ^ 1);
+    }
+
+    /**
+     * Traffic of the road from one cell to another, 0 if they are not
+     * adjacent or the road is blocked.
+     */
+    public int traffic(State from, State to) {
+        int d = direction(from, to);
+        if (d < 0 || !contains(from.x, from.y) || !contains(to.x, to.y)) {
+            return 0;
+        }
+        return traffic(cell(from.x, from.y), d);
+    }
+
+    /**
+     * Id of the neighbour of cell in direction d, or -1 off the grid.
+     */
+    public int neighbour(int cell, int d) {
+        return layout.neighbour(cell, d);
+    }
+
+    public int maxTraffic() {
+        int max = 0;
+        for (byte level : traffic) {
+            max = Math.max(max, level & 0xFF);
+        }
+        return max;
+    }
+
+    /**
+     * Smallest positive traffic level, or 1 if every road is blocked. No
+     * step between adjacent cells costs less.
+     */
+    public int minTraffic() {
+        int min = MAX_TRAFFIC + 1;
+        for (byte level : traffic) {
+            int value = level & 0xFF;
+            if (value > 0) {
+                min = Math.min(min, value);
+            }
+        }
+        return min > MAX_TRAFFIC ? 1 : min;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < m && y >= 0 && y < n;
+    }
+
+    public int cell(int x, int y) {
+        return layout.id(x, y);
+    }
+
+    /**
+     * Direction index of to as seen from from, or -1 if not adjacent.
+     */
+    static int direction(State from, State to) {
+        for (int d = 0; d < 4; d++) {
+            if (to.x == from.x + DX[d] && to.y == from.y + DY[d]) {
+                return d;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,18 @@
+package code;
+
+/**
+ * Callback receiving the successors of a state.
+ *
+ * @param <State> state type of the problem
+ * @param <Action> action type of the problem
+ */
+@FunctionalInterface
+public interface TransitionVisitor<State, Action> {
+
+    /**
+     * @param action the action taken
+     * @param child the resulting state
+     * @param cost step cost of the action
+     */
+    void visit(Action action, State child, double cost);
+}
@@ -0,0 +1,123 @@
+package code;
+
+import java.util.*;
+
+/**
+ * Cell -> tunnel exits lookup, built once from the tunnel list.
+ *
+ * A cell may be the entrance of several tunnels; its exits are kept in
+ * tunnel-list order, so exit(cell, 0) is the tunnel the original linear scan
+ * found first. Cell ids follow a CellLayout (row-major unless given).
+ *
+ * Dense layouts (many tunnel cells relative to the grid) use CSR arrays:
+ * the exits of cell v are exits[offsets[v] .. offsets[v + 1]). Sparse
+ * layouts keep only the tunnel cells in a map, so a huge grid with a few
+ * tunnels does not pay for an offset per cell.
+ */
+public final class TunnelIndex {
+
+    private static final int[] NONE = new int[0];
+
+    /** Use CSR when the grid has at most this many cells per tunnel endpoint. */
+    private static final int DENSE_CELLS_PER_ENDPOINT = 16;
+
+    private final int[] offsets;              // CSR, null when sparse
+    private final int[] exits;                // CSR, null when sparse
+    private final Map<Integer, int[]> sparse; // null when dense
+
+    public TunnelIndex(int m, int n, List<Tunnel> tunnels) {
+        this(CellLayout.rowMajor(m, n), tunnels);
+    }
+
+    public TunnelIndex(CellLayout layout, List<Tunnel> tunnels) {
+        int m = layout.m;
+        int n = layout.n;
+        // Exits per cell in tunnel-list order; self-loops, duplicates and
+        // tunnels leaving the grid lead nowhere new and are dropped.
+        Map<Integer, int[]> byCell = new HashMap<>();
+        int endpoints = 0;
+        for (Tunnel tunnel : tunnels) {
+            if (!inGrid(m, n, tunnel.from) || !inGrid(m, n, tunnel.to) || tunnel.from.equals(tunnel.to)) {
+                continue;
+            }
+            int a = layout.id(tunnel.from.x, tunnel.from.y);
+            int b = layout.id(tunnel.to.x, tunnel.to.y);
+            if (add(byCell, a, b)) {
+                add(byCell, b, a);
+                endpoints += 2;
+            }
+        }
+
+        int cells = m * n;
+        if (cells <= (long) endpoints * DENSE_CELLS_PER_ENDPOINT) {
+            offsets = new int[cells + 1];
+            exits = new int[endpoints];
+            for (Map.Entry<Integer, int[]> entry : byCell.entrySet()) {
+                offsets[entry.getKey() + 1] = entry.getValue().length;
+            }
+            for (int v = 0; v < cells; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            for (Map.Entry<Integer, int[]> entry : byCell.entrySet()) {
+                int[] cellExits = entry.getValue();
+                System.arraycopy(cellExits, 0, exits, offsets[entry.getKey()], cellExits.length);
+            }
+            sparse = null;
+        } else {
+            offsets = null;
+            exits = null;
+            sparse = byCell;
+        }
+    }
+
+    /**
+     * Append exit to the list of cell unless it is already there.
+     */
+    private static boolean add(Map<Integer, int[]> byCell, int cell, int exit) {
+        int[] current = byCell.getOrDefault(cell, NONE);
+        for (int e : current) {
+            if (e == exit) {
+                return false;
+            }
+        }
+        int[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = exit;
+        byCell.put(cell, grown);
+        return true;
+    }
+
+    private static boolean inGrid(int m, int n, State s) {
+        return s.x >= 0 && s.x < m && s.y >= 0 && s.y < n;
+    }
+
+    /**
+     * Number of tunnels with an entrance at cell.
+     */
+    public int count(int cell) {
+        if (offsets != null) {
+            return offsets[cell + 1] - offsets[cell];
+        }
+        return sparse.getOrDefault(cell, NONE).length;
+    }
+
+    /**
+     * Far end of the i-th tunnel at cell, 0 <= i < count(cell).
+     */
+    public int exit(int cell, int i) {
+        if (offsets != null) {
+            return exits[offsets[cell] + i];
+        }
+        return sparse.get(cell)[i];
+    }
+
+    /**
+     * Far end of the first tunnel at cell, or -1 if there is none.
+     */
+    public int firstExit(int cell) {
+        return count(cell) > 0 ? exit(cell, 0) : -1;
+    }
+
+    public boolean isDense() {
+        return offsets != null;
+    }
+}
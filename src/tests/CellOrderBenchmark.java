@@ -0,0 +1,159 @@
+package tests;
+
+import code.*;
+import java.util.*;
+
+/**
+ * Compares the cell orders of DeliverySearch on large random grids.
+ *
+ * For every grid size and CellOrder it prints:
+ * - neighbour line misses: share of (cell, road neighbour) pairs whose ids
+ *   fall into different 64-byte lines of an int[] indexed by state id
+ * - lines per region: distinct such lines covering a diamond of radius 16
+ *   around a random cell, the footprint of a small search
+ * - ms / query and nodes expanded for UC and AS2 on the same random pairs
+ *
+ * Costs must be equal in every order; the benchmark stops if they are not.
+ * Queries alternate between the orders so JIT warm-up and heap growth hit
+ * them alike. For hardware cache-miss counts run it under
+ * perf stat -e cache-references,cache-misses (one order at a time via the
+ * third argument).
+ *
+ * Usage: java -cp out tests.CellOrderBenchmark [sizes=256,512,1024] [queries=10] [orders=all]
+ */
+public class CellOrderBenchmark {
+
+    private static final int IDS_PER_LINE = 64 / Integer.BYTES;
+    private static final int REGION_RADIUS = 16;
+
+    public static void main(String[] args) {
+        int[] sizes = Arrays.stream((args.length > 0 ? args[0] : "256,512,1024").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        CellOrder[] orders = args.length > 2
+                ? Arrays.stream(args[2].split(",")).map(CellOrder::valueOf).toArray(CellOrder[]::new)
+                : CellOrder.values();
+        Strategy[] strategies = {Strategy.UC, Strategy.AS2};
+
+        for (int size : sizes) {
+            Random random = new Random(size);
+            DeliverySearch base = randomGrid(random, size, size);
+            DeliverySearch[] grids = new DeliverySearch[orders.length];
+            for (int o = 0; o < orders.length; o++) {
+                grids[o] = base.withCellOrder(orders[o]);
+            }
+            State[][] pairs = new State[queries + 1][];
+            for (int q = 0; q <= queries; q++) {
+                pairs[q] = new State[]{randomCell(random, size, size), randomCell(random, size, size)};
+            }
+
+            long[][] nanos = new long[orders.length][strategies.length];
+            long[][] nodes = new long[orders.length][strategies.length];
+            // Pair 0 only warms up the JIT
+            for (int q = 0; q <= queries; q++) {
+                for (int s = 0; s < strategies.length; s++) {
+                    double expected = Double.NaN;
+                    for (int o = 0; o < orders.length; o++) {
+                        long start = System.nanoTime();
+                        GenericSearch.SearchResult<State, Action> result =
+                                grids[o].path(pairs[q][0], pairs[q][1], strategies[s]);
+                        long elapsed = System.nanoTime() - start;
+                        if (o > 0 && result.cost != expected) {
+                            throw new IllegalStateException(orders[o] + " " + strategies[s] + " cost "
+                                    + result.cost + ", " + orders[0] + " cost " + expected);
+                        }
+                        expected = result.cost;
+                        if (q > 0) {
+                            nanos[o][s] += elapsed;
+                            nodes[o][s] += result.nodesExpanded;
+                        }
+                    }
+                }
+            }
+
+            System.out.println("Grid " + size + "x" + size + ", " + queries + " queries");
+            System.out.printf("  %-10s %14s %16s", "order", "line misses %", "lines / region");
+            for (Strategy strategy : strategies) {
+                System.out.printf(" %12s %12s", strategy + " ms/q", "nodes/q");
+            }
+            System.out.println();
+            for (int o = 0; o < orders.length; o++) {
+                CellLayout layout = grids[o].getTrafficGrid().getLayout();
+                System.out.printf("  %-10s %14.1f %16.1f", orders[o],
+                        100 * neighbourLineMisses(grids[o].getTrafficGrid()),
+                        linesPerRegion(layout, new Random(size)));
+                for (int s = 0; s < strategies.length; s++) {
+                    System.out.printf(" %12.2f %12d", nanos[o][s] / 1e6 / queries, nodes[o][s] / queries);
+                }
+                System.out.println();
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Random traffic 1-4 on every road and size / 8 random tunnels.
+     */
+    private static DeliverySearch randomGrid(Random random, int m, int n) {
+        TrafficGrid traffic = new TrafficGrid(m, n);
+        for (int x = 0; x < m; x++) {
+            for (int y = 0; y < n; y++) {
+                State from = new State(x, y);
+                if (x + 1 < m) {
+                    traffic.set(from, new State(x + 1, y), 1 + random.nextInt(4));
+                    traffic.set(new State(x + 1, y), from, 1 + random.nextInt(4));
+                }
+                if (y + 1 < n) {
+                    traffic.set(from, new State(x, y + 1), 1 + random.nextInt(4));
+                    traffic.set(new State(x, y + 1), from, 1 + random.nextInt(4));
+                }
+            }
+        }
+        List<Tunnel> tunnels = new ArrayList<>();
+        for (int i = 0; i < Math.max(m, n) / 8; i++) {
+            tunnels.add(new Tunnel(randomCell(random, m, n), randomCell(random, m, n)));
+        }
+        List<State> stores = List.of(new State(0, 0));
+        return new DeliverySearch(traffic, tunnels, stores, new ArrayList<>(), new ArrayList<>(stores),
+                new ManhattanHeuristic(), new TrafficAwareHeuristic(TrafficBounds.of(traffic, false)));
+    }
+
+    private static State randomCell(Random random, int m, int n) {
+        return new State(random.nextInt(m), random.nextInt(n));
+    }
+
+    private static double neighbourLineMisses(TrafficGrid traffic) {
+        long pairs = 0;
+        long misses = 0;
+        for (int cell = 0; cell < traffic.m * traffic.n; cell++) {
+            for (int d = 0; d < 4; d++) {
+                int other = traffic.neighbour(cell, d);
+                if (other < 0) continue;
+                pairs++;
+                if (other / IDS_PER_LINE != cell / IDS_PER_LINE) {
+                    misses++;
+                }
+            }
+        }
+        return pairs == 0 ? 0 : (double) misses / pairs;
+    }
+
+    private static double linesPerRegion(CellLayout layout, Random random) {
+        int samples = 200;
+        long lines = 0;
+        Set<Integer> touched = new HashSet<>();
+        for (int i = 0; i < samples; i++) {
+            int cx = random.nextInt(layout.m);
+            int cy = random.nextInt(layout.n);
+            touched.clear();
+            for (int x = Math.max(0, cx - REGION_RADIUS); x <= Math.min(layout.m - 1, cx + REGION_RADIUS); x++) {
+                int reach = REGION_RADIUS - Math.abs(x - cx);
+                for (int y = Math.max(0, cy - reach); y <= Math.min(layout.n - 1, cy + reach); y++) {
+                    touched.add(layout.id(x, y) / IDS_PER_LINE);
+                }
+            }
+            lines += touched.size();
+        }
+        return (double) lines / samples;
+    }
+}
@@ -0,0 +1,115 @@
+package tests;
+
+import code.*;
+import java.util.*;
+
+/**
+ * Measures the CH strategy on random square grids against UC.
+ *
+ * For every grid size it prints:
+ * - preprocessing time, original edges and shortcuts added
+ * - us per raw ContractionHierarchy.query and states settled per query
+ *   (best of ROUNDS passes over the pairs, so the JIT has compiled it)
+ * - ms per DeliverySearch.path query for CH and UC, on the same pairs
+ *
+ * Costs must be equal; the benchmark stops if they are not. The first
+ * WARM_UP path queries are not timed.
+ *
+ * Usage: java -cp out tests.ContractionHierarchyBenchmark [sizes=100] [queries=200]
+ */
+public class ContractionHierarchyBenchmark {
+
+    private static final int WARM_UP = 20;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        int[] sizes = Arrays.stream((args.length > 0 ? args[0] : "100").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        for (int size : sizes) {
+            Random random = new Random(size);
+            DeliverySearch ds = randomGrid(random, size, size);
+            ContractionHierarchy<State, Action> ch = ds.getContractionHierarchy();
+
+            State[][] pairs = new State[WARM_UP + queries][];
+            for (int q = 0; q < pairs.length; q++) {
+                pairs[q] = new State[]{randomCell(random, size, size), randomCell(random, size, size)};
+            }
+
+            long rawNanos = Long.MAX_VALUE;
+            long settled = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                settled = 0;
+                for (State[] pair : pairs) {
+                    settled += ch.query(pair[0], pair[1]).nodesExpanded;
+                }
+                rawNanos = Math.min(rawNanos, System.nanoTime() - start);
+            }
+
+            long chNanos = 0;
+            long ucNanos = 0;
+            for (int q = 0; q < pairs.length; q++) {
+                GenericSearch.SearchResult<State, Action> raw = ch.query(pairs[q][0], pairs[q][1]);
+
+                long start = System.nanoTime();
+                GenericSearch.SearchResult<State, Action> viaPath = ds.path(pairs[q][0], pairs[q][1], Strategy.CH);
+                long chElapsed = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                GenericSearch.SearchResult<State, Action> uc = ds.path(pairs[q][0], pairs[q][1], Strategy.UC);
+                long ucElapsed = System.nanoTime() - start;
+
+                if (raw.cost != uc.cost || viaPath.cost != uc.cost) {
+                    throw new IllegalStateException("CH cost " + raw.cost + ", UC cost " + uc.cost
+                            + " from " + pairs[q][0] + " to " + pairs[q][1]);
+                }
+                if (q >= WARM_UP) {
+                    chNanos += chElapsed;
+                    ucNanos += ucElapsed;
+                }
+            }
+
+            System.out.println("Grid " + size + "x" + size + ", " + queries + " queries");
+            System.out.printf("  preprocessing %d ms, %d edges, %d shortcuts%n",
+                    ch.getPreprocessingMillis(), ch.getOriginalEdgeCount(), ch.getShortcutCount());
+            System.out.printf("  raw query %.1f us, %d settled / query%n",
+                    rawNanos / 1e3 / pairs.length, settled / pairs.length);
+            System.out.printf("  path(): CH %.2f ms, UC %.2f ms per query (%.1fx)%n",
+                    chNanos / 1e6 / queries, ucNanos / 1e6 / queries, (double) ucNanos / chNanos);
+            System.out.println();
+        }
+    }
+
+    /**
+     * Random traffic 1-4 on every road and size / 8 random tunnels.
+     */
+    private static DeliverySearch randomGrid(Random random, int m, int n) {
+        TrafficGrid traffic = new TrafficGrid(m, n);
+        for (int x = 0; x < m; x++) {
+            for (int y = 0; y < n; y++) {
+                State from = new State(x, y);
+                if (x + 1 < m) {
+                    traffic.set(from, new State(x + 1, y), 1 + random.nextInt(4));
+                    traffic.set(new State(x + 1, y), from, 1 + random.nextInt(4));
+                }
+                if (y + 1 < n) {
+                    traffic.set(from, new State(x, y + 1), 1 + random.nextInt(4));
+                    traffic.set(new State(x, y + 1), from, 1 + random.nextInt(4));
+                }
+            }
+        }
+        List<Tunnel> tunnels = new ArrayList<>();
+        for (int i = 0; i < Math.max(m, n) / 8; i++) {
+            tunnels.add(new Tunnel(randomCell(random, m, n), randomCell(random, m, n)));
+        }
+        List<State> stores = List.of(new State(0, 0));
+        return new DeliverySearch(traffic, tunnels, stores, new ArrayList<>(), new ArrayList<>(stores),
+                new ManhattanHeuristic(), new TrafficAwareHeuristic(TrafficBounds.of(traffic, false)));
+    }
+
+    private static State randomCell(Random random, int m, int n) {
+        return new State(random.nextInt(m), random.nextInt(n));
+    }
+}
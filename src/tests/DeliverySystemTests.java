@@ -1,6 +1,11 @@
 package tests;
 
 import code.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Comprehensive test suite for the delivery system.
@@ -21,6 +26,29 @@ public class DeliverySystemTests {
         testCompletePipeline();
         testPerformanceComparison();
         testOptimalityCheck();
+        testFrontierImplementations();
+        testBidirectionalStrategies();
+        testTieBreaking();
+        testTrafficGrid();
+        testSharedTunnelEntrance();
+        testLandmarkHeuristic();
+        testContractionHierarchy();
+        testHierarchicalPlanner();
+        testHeuristicTables();
+        testPortalHeuristic();
+        testCalibratedBounds();
+        testReachabilityPrecheck();
+        testDistanceOracle();
+        testArtifactStore();
+        testCellOrders();
+        testOneToManyMatrix();
+        testPlannerReusesPaths();
+        testPathCache();
+        testTruckPruning();
+        testParallelQueries();
+        testTunnelReplay();
+        testTrafficChanges();
+        testOffGridEndpoints();
         
         System.out.println("\n========================================");
         System.out.println("  ALL TESTS COMPLETED");
@@ -120,7 +148,7 @@ public class DeliverySystemTests {
         String initialState = "5;5;2;2;1,1,3,3;";
         String traffic = generateUniformTraffic(5, 5, 2);
 
-        String[] strategies = {"BF", "DF", "ID", "UC", "GR1", "GR2", "AS1", "AS2"};
+        String[] strategies = {"BF", "DF", "ID", "UC", "GR1", "GR2", "AS1", "AS2", "UCB", "IDA1", "IDA2"};
 
         System.out.printf("%-6s | %-8s | %-12s | %-10s%n", "Strat", "Time(ms)", "Deliveries", "Status");
         System.out.println("------------------------------------------------");
@@ -234,16 +262,22 @@ public class DeliverySystemTests {
         try {
             String resultUC = DeliverySearch.solve(initialState, traffic, "UC", false);
             String resultAS1 = DeliverySearch.solve(initialState, traffic, "AS1", false);
+            String resultUCB = DeliverySearch.solve(initialState, traffic, "UCB", false);
+            String resultIDA2 = DeliverySearch.solve(initialState, traffic, "IDA2", false);
 
             // Extract total costs
             int costUC = getTotalCost(resultUC);
             int costAS1 = getTotalCost(resultAS1);
+            int costUCB = getTotalCost(resultUCB);
+            int costIDA2 = getTotalCost(resultIDA2);
 
             System.out.println("  UC Total Cost:  " + costUC);
             System.out.println("  A* Total Cost:  " + costAS1);
+            System.out.println("  UCB Total Cost: " + costUCB);
+            System.out.println("  IDA* Total Cost: " + costIDA2);
 
-            if (costUC == costAS1) {
-                System.out.println("✓ Both algorithms found optimal solution");
+            if (costUC == costAS1 && costUC == costUCB && costUC == costIDA2) {
+                System.out.println("✓ All algorithms found optimal solution");
             } else {
                 System.out.println("⚠ Warning: Costs differ (might be due to ties)");
             }
@@ -253,6 +287,1262 @@ public class DeliverySystemTests {
         System.out.println();
     }
 
+    /**
+     * Test 8: Lazy vs decrease-key frontiers return the same cost
+     */
+    private static void testFrontierImplementations() {
+        System.out.println("TEST 8: Frontier Implementations (UC / AS2)");
+        System.out.println("-------------------------------------------");
+
+        String initialState = "12;12;1;1;10,9;2,3,9,1";
+        String traffic = DeliverySearch.GenTraffic(12, 12);
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, traffic);
+        State store = new State(0, 0);
+        State customer = new State(10, 9);
+
+        System.out.printf("%-16s | %-8s | %-6s | %-6s | %-13s%n",
+            "Frontier", "Strategy", "Cost", "Nodes", "Peak Frontier");
+        System.out.println("----------------------------------------------------------------");
+
+        try {
+            boolean consistent = true;
+            for (Strategy strategy : new Strategy[]{Strategy.UC, Strategy.AS2}) {
+                double reference = -1;
+                for (SearchOptions.Frontier frontier : SearchOptions.Frontier.values()) {
+                    ds.setSearchOptions(SearchOptions.DEFAULT.withFrontier(frontier));
+                    GenericSearch.SearchResult<State, Action> result = ds.path(store, customer, strategy);
+                    System.out.printf("%-16s | %-8s | %6d | %6d | %13d%n",
+                        frontier, strategy, (int) result.cost, result.nodesExpanded, result.peakFrontier);
+
+                    if (reference < 0) {
+                        reference = result.cost;
+                    } else if (result.cost != reference) {
+                        consistent = false;
+                    }
+                }
+            }
+
+            if (consistent) {
+                System.out.println("✓ All frontiers found the same optimal cost");
+            } else {
+                System.out.println("✗ Frontier implementations disagree on cost");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Frontier test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 9: Bidirectional strategies match unidirectional UC costs
+     */
+    private static void testBidirectionalStrategies() {
+        System.out.println("TEST 9: Bidirectional Search (BUC / BAS1 / BAS2)");
+        System.out.println("-------------------------------------------------");
+
+        String initialState = "10;10;4;2;9,2,3,8,6,6,0,9;1,1,8,8,2,7,7,2";
+        String traffic = DeliverySearch.GenTraffic(10, 10);
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, traffic);
+        State[] stores = {new State(0, 0), new State(9, 9)};
+        State[] customers = {new State(9, 2), new State(3, 8), new State(6, 6), new State(0, 9)};
+        Strategy[] strategies = {Strategy.BUC, Strategy.BAS1, Strategy.BAS2};
+
+        try {
+            int mismatches = 0;
+            int nodesUC = 0;
+            int[] nodes = new int[strategies.length];
+
+            for (State store : stores) {
+                for (State customer : customers) {
+                    GenericSearch.SearchResult<State, Action> reference = ds.path(store, customer, Strategy.UC);
+                    nodesUC += reference.nodesExpanded;
+                    for (int i = 0; i < strategies.length; i++) {
+                        GenericSearch.SearchResult<State, Action> result = ds.path(store, customer, strategies[i]);
+                        nodes[i] += result.nodesExpanded;
+                        if (result.cost != reference.cost) {
+                            mismatches++;
+                            System.out.println("  " + strategies[i] + " " + store + " -> " + customer
+                                + ": cost " + result.cost + " vs UC " + reference.cost);
+                        }
+                    }
+                }
+            }
+
+            System.out.println("  UC   nodes: " + nodesUC);
+            for (int i = 0; i < strategies.length; i++) {
+                System.out.println("  " + strategies[i] + " nodes: " + nodes[i]);
+            }
+
+            if (mismatches == 0) {
+                System.out.println("✓ Bidirectional strategies found optimal costs");
+            } else {
+                System.out.println("✗ " + mismatches + " bidirectional results differ from UC");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Bidirectional test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 10: Tie-breaking changes expansion order, never the A* cost, and
+     * the heuristic is evaluated at most once per state
+     */
+    private static void testTieBreaking() {
+        System.out.println("TEST 10: Tie-Breaking and Heuristic Calls (AS1 / AS2)");
+        System.out.println("------------------------------------------------------");
+
+        String initialState = "15;15;1;1;13,12;2,3,11,1";
+        String traffic = DeliverySearch.GenTraffic(15, 15);
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, traffic);
+        State store = new State(0, 0);
+        State customer = new State(13, 12);
+
+        System.out.printf("%-10s | %-8s | %-6s | %-6s | %-7s%n",
+            "Tie-Break", "Strategy", "Cost", "Nodes", "h calls");
+        System.out.println("------------------------------------------------");
+
+        try {
+            double reference = ds.path(store, customer, Strategy.UC).cost;
+            boolean ok = true;
+            for (SearchOptions.TieBreak tieBreak : SearchOptions.TieBreak.values()) {
+                ds.setSearchOptions(SearchOptions.DEFAULT.withTieBreak(tieBreak));
+                for (Strategy strategy : new Strategy[]{Strategy.AS1, Strategy.AS2}) {
+                    GenericSearch.SearchResult<State, Action> result = ds.path(store, customer, strategy);
+                    System.out.printf("%-10s | %-8s | %6d | %6d | %7d%n",
+                        tieBreak, strategy, (int) result.cost, result.nodesExpanded, result.heuristicCalls);
+
+                    if (result.cost != reference || result.heuristicCalls <= 0
+                            || result.heuristicCalls > ds.stateCount()) {
+                        ok = false;
+                    }
+                }
+            }
+            ds.setSearchOptions(SearchOptions.DEFAULT);
+
+            if (ok) {
+                System.out.println("✓ All tie-break settings found the optimal cost");
+            } else {
+                System.out.println("✗ Tie-breaking changed the cost or heuristic calls are off");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Tie-breaking test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 11: Dense traffic grid matches the map-based constructor and
+     * rejects levels that do not fit in a byte
+     */
+    private static void testTrafficGrid() {
+        System.out.println("TEST 11: Dense Traffic Grid");
+        System.out.println("---------------------------");
+
+        int m = 8;
+        int n = 8;
+        String traffic = DeliverySearch.GenTraffic(m, n);
+        Map<State, Map<State, Integer>> edgeTraffic = new HashMap<>();
+        for (String edge : traffic.split(";")) {
+            String[] e = edge.split(",");
+            if (e.length < 5 || Integer.parseInt(e[4]) == 0) continue;
+            edgeTraffic.computeIfAbsent(new State(Integer.parseInt(e[0]), Integer.parseInt(e[1])),
+                k -> new HashMap<>()).put(new State(Integer.parseInt(e[2]), Integer.parseInt(e[3])),
+                Integer.parseInt(e[4]));
+        }
+
+        try {
+            List<Tunnel> tunnels = Collections.singletonList(new Tunnel(new State(1, 6), new State(6, 1)));
+            DeliverySearch dense = DeliverySearch.fromStrings("8;8;1;1;7,7;1,6,6,1", traffic);
+            DeliverySearch adapted = new DeliverySearch(m, n, edgeTraffic, tunnels,
+                Collections.singletonList(new State(0, 0)), Collections.singletonList(new State(7, 7)),
+                Collections.singletonList(new State(0, 0)),
+                new ManhattanHeuristic(), new TrafficAwareHeuristic(1));
+
+            double denseCost = dense.path(new State(0, 0), new State(7, 7), Strategy.UC).cost;
+            double adaptedCost = adapted.path(new State(0, 0), new State(7, 7), Strategy.UC).cost;
+            System.out.println("  fromStrings cost: " + (int) denseCost + ", map adapter cost: " + (int) adaptedCost);
+
+            boolean rejected = false;
+            try {
+                new TrafficGrid(2, 2).set(new State(0, 0), new State(0, 1), TrafficGrid.MAX_TRAFFIC + 1);
+            } catch (IllegalArgumentException e) {
+                rejected = true;
+            }
+
+            if (denseCost == adaptedCost && rejected) {
+                System.out.println("✓ Dense grid and map adapter agree; oversized traffic rejected");
+            } else {
+                System.out.println("✗ Dense traffic grid test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Traffic grid test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 12: Every tunnel at a shared entrance is a usable successor
+     */
+    private static void testSharedTunnelEntrance() {
+        System.out.println("TEST 12: Shared Tunnel Entrance");
+        System.out.println("-------------------------------");
+
+        // Both tunnels start at (0,0); only the second one leads to the customer
+        String initialState = "6;6;1;1;5,5;0,0,0,5,0,0,5,5";
+        String traffic = generateUniformTraffic(6, 6, 3);
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, traffic);
+
+        try {
+            boolean ok = true;
+            for (Strategy strategy : new Strategy[]{Strategy.BF, Strategy.UC, Strategy.AS2, Strategy.BUC}) {
+                GenericSearch.SearchResult<State, Action> result =
+                    ds.path(new State(0, 0), new State(5, 5), strategy);
+                System.out.println("  " + strategy + ": " + result.actions + " cost " + (int) result.cost);
+                if (result.cost != 10) {
+                    ok = false;
+                }
+            }
+
+            if (ok) {
+                System.out.println("✓ Second tunnel at (0,0) taken directly");
+            } else {
+                System.out.println("✗ Shared tunnel entrance not fully used");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Shared tunnel test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 13: Landmark heuristic keeps A* optimal and expands fewer nodes
+     */
+    private static void testLandmarkHeuristic() {
+        System.out.println("TEST 13: Landmark Heuristic (AS3/GR3)");
+        System.out.println("-------------------------------------");
+
+        String initialState = "20;20;1;1;19,19;";
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, DeliverySearch.GenTraffic(20, 20));
+
+        try {
+            State store = new State(0, 0);
+            State customer = new State(19, 19);
+            GenericSearch.SearchResult<State, Action> uc = ds.path(store, customer, Strategy.UC);
+            GenericSearch.SearchResult<State, Action> as1 = ds.path(store, customer, Strategy.AS1);
+            GenericSearch.SearchResult<State, Action> as3 = ds.path(store, customer, Strategy.AS3);
+            GenericSearch.SearchResult<State, Action> gr3 = ds.path(store, customer, Strategy.GR3);
+            System.out.println("  " + ds.getLandmarkHeuristic());
+            System.out.println("  UC: cost " + (int) uc.cost + ", nodes " + uc.nodesExpanded);
+            System.out.println("  AS1: cost " + (int) as1.cost + ", nodes " + as1.nodesExpanded);
+            System.out.println("  AS3: cost " + (int) as3.cost + ", nodes " + as3.nodesExpanded);
+            System.out.println("  GR3: cost " + (int) gr3.cost + ", nodes " + gr3.nodesExpanded);
+
+            ds.setLandmarkOptions(4, LandmarkHeuristic.Selection.RANDOM);
+            GenericSearch.SearchResult<State, Action> random = ds.path(store, customer, Strategy.AS3);
+            System.out.println("  AS3 (4 random): cost " + (int) random.cost + ", nodes " + random.nodesExpanded);
+
+            if (as3.cost == uc.cost && random.cost == uc.cost
+                    && as3.nodesExpanded <= as1.nodesExpanded && gr3.cost >= uc.cost) {
+                System.out.println("✓ AS3 optimal with fewer expansions than AS1");
+            } else {
+                System.out.println("✗ Landmark heuristic test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Landmark heuristic test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 14: Contraction hierarchy queries match UC and unpack to real moves
+     */
+    private static void testContractionHierarchy() {
+        System.out.println("TEST 14: Contraction Hierarchy (CH)");
+        System.out.println("-----------------------------------");
+
+        String initialState = "15;15;1;1;14,14;0,7,12,2";
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, DeliverySearch.GenTraffic(15, 15));
+
+        try {
+            Random random = new Random(3);
+            boolean ok = true;
+            for (int i = 0; i < 50; i++) {
+                State store = new State(random.nextInt(15), random.nextInt(15));
+                State customer = new State(random.nextInt(15), random.nextInt(15));
+                GenericSearch.SearchResult<State, Action> uc = ds.path(store, customer, Strategy.UC);
+                GenericSearch.SearchResult<State, Action> ch = ds.path(store, customer, Strategy.CH);
+
+                // Replay the unpacked actions on the grid
+                State current = store;
+                double replayed = 0;
+                for (Action action : ch.actions) {
+                    State next = ds.result(current, action);
+                    replayed += ds.stepCost(current, action, next);
+                    current = next;
+                }
+                if (ch.cost != uc.cost || (uc.cost < Double.POSITIVE_INFINITY
+                        && (replayed != ch.cost || !current.equals(customer)))) {
+                    System.out.println("  mismatch " + store + " -> " + customer + ": CH " + ch.cost + ", UC " + uc.cost);
+                    ok = false;
+                }
+            }
+            System.out.println("  " + ds.getContractionHierarchy());
+
+            if (ok) {
+                System.out.println("✓ 50 CH queries match UC and replay correctly");
+            } else {
+                System.out.println("✗ Contraction hierarchy test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Contraction hierarchy test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 15: HPA routes are valid and close to the UC optimum
+     */
+    private static void testHierarchicalPlanner() {
+        System.out.println("TEST 15: Hierarchical Path-Finding (HPA)");
+        System.out.println("----------------------------------------");
+
+        String initialState = "40;40;1;1;39,39;2,3,35,30";
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, DeliverySearch.GenTraffic(40, 40));
+        ds.setClusterSize(8);
+
+        try {
+            Random random = new Random(5);
+            boolean ok = true;
+            double ucTotal = 0;
+            double hpaTotal = 0;
+            for (int i = 0; i < 30; i++) {
+                State store = new State(random.nextInt(40), random.nextInt(40));
+                State customer = new State(random.nextInt(40), random.nextInt(40));
+                GenericSearch.SearchResult<State, Action> uc = ds.path(store, customer, Strategy.UC);
+                GenericSearch.SearchResult<State, Action> hpa = ds.path(store, customer, Strategy.HPA);
+                if (uc.cost == Double.POSITIVE_INFINITY) {
+                    ok &= hpa.cost == Double.POSITIVE_INFINITY;
+                    continue;
+                }
+
+                State current = store;
+                double replayed = 0;
+                for (Action action : hpa.actions) {
+                    State next = ds.result(current, action);
+                    replayed += ds.stepCost(current, action, next);
+                    current = next;
+                }
+                if (hpa.cost < uc.cost || replayed != hpa.cost || !current.equals(customer)) {
+                    System.out.println("  invalid route " + store + " -> " + customer);
+                    ok = false;
+                }
+                ucTotal += uc.cost;
+                hpaTotal += hpa.cost;
+            }
+            System.out.println("  " + ds.getHierarchicalPlanner());
+            System.out.printf("  Suboptimality vs UC: %.3f%n", hpaTotal / ucTotal);
+
+            if (ok && hpaTotal / ucTotal < 1.5) {
+                System.out.println("✓ HPA routes replay correctly and stay near-optimal");
+            } else {
+                System.out.println("✗ Hierarchical planner test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Hierarchical planner test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 16: Per-goal heuristic tables give the same values as the formula
+     */
+    private static void testHeuristicTables() {
+        System.out.println("TEST 16: Per-Goal Heuristic Tables");
+        System.out.println("----------------------------------");
+
+        List<Tunnel> tunnels = Arrays.asList(
+            new Tunnel(new State(0, 0), new State(11, 11)),
+            new Tunnel(new State(2, 9), new State(9, 2)),
+            new Tunnel(new State(5, 5), new State(6, 6)));
+        TrafficAwareHeuristic table = new TrafficAwareHeuristic(1, 12, 12);
+        TrafficAwareHeuristic formula = new TrafficAwareHeuristic(1);
+
+        try {
+            boolean ok = true;
+            // Revisit the first goal to exercise the table cache
+            State[] goals = {new State(11, 0), new State(3, 4), new State(11, 0)};
+            for (State goal : goals) {
+                Heuristic<State> fromTable = table.forGoal(goal, tunnels);
+                Heuristic<State> fromFormula = formula.forGoal(goal, tunnels);
+                for (int x = 0; x < 12; x++) {
+                    for (int y = 0; y < 12; y++) {
+                        State s = new State(x, y);
+                        ok &= fromTable.h(s) == fromFormula.h(s);
+                    }
+                }
+            }
+
+            if (ok) {
+                System.out.println("✓ Table and formula agree on every cell for " + goals.length + " goals");
+            } else {
+                System.out.println("✗ Heuristic table differs from formula");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Heuristic table test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 17: Portal heuristic on chained tunnels stays optimal
+     */
+    private static void testPortalHeuristic() {
+        System.out.println("TEST 17: Portal-Graph Heuristic (AS4/GR4)");
+        System.out.println("-----------------------------------------");
+
+        // Congested grid where the best route chains three tunnels
+        String initialState = "20;20;1;1;19,19;0,1,10,1,10,2,19,2,19,3,19,18";
+        String traffic = generateUniformTraffic(20, 20, 4);
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, traffic);
+
+        try {
+            State store = new State(0, 0);
+            State customer = new State(19, 19);
+            GenericSearch.SearchResult<State, Action> uc = ds.path(store, customer, Strategy.UC);
+            GenericSearch.SearchResult<State, Action> as1 = ds.path(store, customer, Strategy.AS1);
+            GenericSearch.SearchResult<State, Action> as2 = ds.path(store, customer, Strategy.AS2);
+            GenericSearch.SearchResult<State, Action> as4 = ds.path(store, customer, Strategy.AS4);
+            GenericSearch.SearchResult<State, Action> gr4 = ds.path(store, customer, Strategy.GR4);
+            System.out.println("  UC: cost " + (int) uc.cost + ", nodes " + uc.nodesExpanded);
+            System.out.println("  AS1: cost " + (int) as1.cost + ", nodes " + as1.nodesExpanded);
+            System.out.println("  AS2: cost " + (int) as2.cost + ", nodes " + as2.nodesExpanded);
+            System.out.println("  AS4: cost " + (int) as4.cost + ", nodes " + as4.nodesExpanded);
+            System.out.println("  GR4: cost " + (int) gr4.cost + ", nodes " + gr4.nodesExpanded);
+
+            if (as4.cost == uc.cost && as2.cost == uc.cost && as4.nodesExpanded < as1.nodesExpanded
+                    && as4.nodesExpanded <= as2.nodesExpanded && gr4.cost >= uc.cost) {
+                System.out.println("✓ AS4 optimal through chained tunnels with fewer expansions");
+            } else {
+                System.out.println("✗ Portal heuristic test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Portal heuristic test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 18: Heuristics calibrated on the parsed traffic stay optimal
+     */
+    private static void testCalibratedBounds() {
+        System.out.println("TEST 18: Calibrated Traffic Bounds (AS2/AS4)");
+        System.out.println("--------------------------------------------");
+
+        // Roads right cost 3; roads down cost 1 in the top half, 4 in the bottom half
+        int size = 30;
+        StringBuilder traffic = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (j < size - 1) {
+                    traffic.append(i).append(",").append(j).append(",").append(i).append(",").append(j + 1).append(",3;");
+                }
+                if (i < size - 1) {
+                    traffic.append(i).append(",").append(j).append(",").append(i + 1).append(",").append(j)
+                           .append(",").append(i < size / 2 ? 1 : 4).append(";");
+                }
+            }
+        }
+        DeliverySearch ds = DeliverySearch.fromStrings(size + ";" + size + ";1;1;29,29;", traffic.toString());
+
+        try {
+            State store = new State(0, 0);
+            State customer = new State(size - 1, size - 1);
+            GenericSearch.SearchResult<State, Action> uc = ds.path(store, customer, Strategy.UC);
+            GenericSearch.SearchResult<State, Action> as1 = ds.path(store, customer, Strategy.AS1);
+            GenericSearch.SearchResult<State, Action> as2 = ds.path(store, customer, Strategy.AS2);
+            GenericSearch.SearchResult<State, Action> as4 = ds.path(store, customer, Strategy.AS4);
+            TrafficBounds regions = TrafficBounds.of(ds.getTrafficGrid(), true);
+            System.out.println("  " + TrafficBounds.of(ds.getTrafficGrid(), false));
+            System.out.println("  UC: cost " + (int) uc.cost + ", nodes " + uc.nodesExpanded);
+            System.out.println("  AS1: cost " + (int) as1.cost + ", nodes " + as1.nodesExpanded);
+            System.out.println("  AS2: cost " + (int) as2.cost + ", nodes " + as2.nodesExpanded);
+            System.out.println("  AS4: cost " + (int) as4.cost + ", nodes " + as4.nodesExpanded);
+            System.out.println("  Region-aware bound: " + regions.lowerBound(store, customer));
+
+            if (as1.cost == uc.cost && as2.cost == uc.cost && as4.cost == uc.cost
+                    && as2.nodesExpanded < as1.nodesExpanded && as4.nodesExpanded < as2.nodesExpanded
+                    && regions.lowerBound(store, customer) <= uc.cost) {
+                System.out.println("✓ Calibrated bounds stay optimal with fewer expansions");
+            } else {
+                System.out.println("✗ Calibrated bounds test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Calibrated bounds test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 19: Unreachable customers are rejected without searching
+     */
+    private static void testReachabilityPrecheck() {
+        System.out.println("TEST 19: Component Reachability Precheck");
+        System.out.println("----------------------------------------");
+
+        // Every road into (5, 5) is blocked; (5, 5) can still drive out
+        String traffic = generateUniformTraffic(10, 10, 2)
+                .replace(";4,5,5,5,2;", ";4,5,5,5,0;")
+                .replace(";5,4,5,5,2;", ";5,4,5,5,0;");
+        DeliverySearch ds = DeliverySearch.fromStrings("10;10;1;1;5,5;", traffic);
+
+        try {
+            State store = new State(0, 0);
+            State customer = new State(5, 5);
+            GenericSearch.SearchResult<State, Action> uc = ds.path(store, customer, Strategy.UC);
+            GenericSearch.SearchResult<State, Action> as2 = ds.path(store, customer, Strategy.AS2);
+            System.out.println("  " + ds.getComponents());
+            System.out.println("  Store component " + ds.componentOf(store)
+                    + ", customer component " + ds.componentOf(customer));
+            System.out.println("  UC: " + DeliverySearch.path(ds, store, customer, Strategy.UC));
+
+            if (!ds.canReach(store, customer) && ds.canReach(store, new State(9, 9))
+                    && uc.cost == Double.POSITIVE_INFINITY && uc.nodesExpanded == 0
+                    && as2.cost == Double.POSITIVE_INFINITY && as2.nodesExpanded == 0) {
+                System.out.println("✓ Unreachable customer detected in O(1)");
+            } else {
+                System.out.println("✗ Reachability precheck test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Reachability precheck test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 20: All-pairs oracle matches UC and plans like UC
+     */
+    private static void testDistanceOracle() {
+        System.out.println("TEST 20: All-Pairs Distance Oracle (APSP)");
+        System.out.println("-----------------------------------------");
+
+        String initialState = "12;12;4;2;11,0,5,7,0,11,8,3;1,1,10,10,0,6,9,2";
+        String traffic = generateUniformTraffic(12, 12, 3);
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, traffic);
+
+        try {
+            DistanceOracle<State, Action> oracle = ds.getDistanceOracle();
+            System.out.println("  " + oracle);
+            boolean same = true;
+            for (int[] pair : new int[][]{{0, 0, 11, 11}, {11, 11, 0, 0}, {0, 0, 5, 7}, {3, 9, 8, 3}}) {
+                State from = new State(pair[0], pair[1]);
+                State to = new State(pair[2], pair[3]);
+                GenericSearch.SearchResult<State, Action> uc = ds.path(from, to, Strategy.UC);
+                GenericSearch.SearchResult<State, Action> apsp = ds.path(from, to, Strategy.APSP);
+                System.out.println("  " + from + " -> " + to + ": UC " + uc.cost + ", APSP " + apsp.cost
+                        + " (" + apsp.actions.size() + " actions)");
+                same &= uc.cost == apsp.cost && uc.cost == oracle.cost(from, to)
+                        && (uc.cost == Double.POSITIVE_INFINITY || !apsp.actions.isEmpty() || from.equals(to));
+            }
+            int ucTotal = getTotalCost(ds.plan(Strategy.UC, false));
+            int apspTotal = getTotalCost(ds.plan(Strategy.APSP, false));
+            System.out.println("  Plan cost: UC " + ucTotal + ", APSP " + apspTotal);
+
+            if (same && ucTotal == apspTotal) {
+                System.out.println("✓ Oracle costs and plans match UC");
+            } else {
+                System.out.println("✗ Distance oracle test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Distance oracle test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 21: Preprocessing artifacts are reused and validated
+     */
+    private static void testArtifactStore() {
+        System.out.println("TEST 21: Persistent Preprocessing Artifacts");
+        System.out.println("-------------------------------------------");
+
+        String initialState = "15;15;3;1;14,14,3,12,9,2;2,2,12,12";
+        String traffic = generateUniformTraffic(15, 15, 2);
+
+        try {
+            Path directory = Files.createTempDirectory("artifacts");
+            ArtifactStore store = new ArtifactStore(directory);
+
+            DeliverySearch first = DeliverySearch.fromStrings(initialState, traffic, store);
+            String expected = first.plan(Strategy.AS3, false);
+            first.getComponents();
+
+            // A second grid with the same inputs loads both artifacts
+            DeliverySearch second = DeliverySearch.fromStrings(initialState, traffic, store);
+            boolean loaded = second.plan(Strategy.AS3, false).equals(expected)
+                    && second.getComponents().componentCount() == first.getComponents().componentCount()
+                    && store.getHits() == 2;
+
+            // A flipped byte fails the checksum: recomputed, same plan
+            Path landmarks = store.pathOf(ArtifactStore.key(initialState, traffic), "landmarks-8-FARTHEST");
+            byte[] bytes = Files.readAllBytes(landmarks);
+            bytes[bytes.length - 8] ^= 1;
+            Files.write(landmarks, bytes);
+            DeliverySearch third = DeliverySearch.fromStrings(initialState, traffic, store);
+            boolean recovered = third.plan(Strategy.AS3, false).equals(expected) && store.getRejected() == 1;
+            System.out.println("  " + store);
+
+            for (File file : directory.toFile().listFiles()) {
+                file.delete();
+            }
+            directory.toFile().delete();
+
+            if (loaded && recovered) {
+                System.out.println("✓ Artifacts reloaded and corrupt files recomputed");
+            } else {
+                System.out.println("✗ Artifact store test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Artifact store test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 22: Space-filling cell orders renumber states without changing costs
+     */
+    private static void testCellOrders() {
+        System.out.println("TEST 22: Morton and Hilbert Cell Orders");
+        System.out.println("---------------------------------------");
+
+        String initialState = "9;13;3;2;8,12,4,6,0,12;1,2,7,10,3,11,8,0";
+        DeliverySearch rowMajor = DeliverySearch.fromStrings(initialState, DeliverySearch.GenTraffic(9, 13));
+
+        try {
+            boolean same = true;
+            for (CellOrder order : new CellOrder[]{CellOrder.MORTON, CellOrder.HILBERT}) {
+                DeliverySearch ds = rowMajor.withCellOrder(order);
+
+                // Ids are a bijection onto 0 .. m * n - 1 and round-trip
+                boolean[] seen = new boolean[ds.stateCount()];
+                boolean bijective = true;
+                for (int x = 0; x < 9; x++) {
+                    for (int y = 0; y < 13; y++) {
+                        int id = ds.indexOf(new State(x, y));
+                        bijective &= !seen[id] && ds.stateAt(id).equals(new State(x, y));
+                        seen[id] = true;
+                    }
+                }
+
+                // CH contracts ties in id order, so only costs must match
+                boolean costs = true;
+                for (Strategy strategy : new Strategy[]{Strategy.UC, Strategy.AS4, Strategy.CH}) {
+                    costs &= getTotalCost(ds.plan(strategy, false)) == getTotalCost(rowMajor.plan(strategy, false));
+                }
+                System.out.println("  " + ds.getTrafficGrid().getLayout() + ": ids bijective " + bijective
+                        + ", plan costs equal " + costs);
+                same &= bijective && costs && ds.getCellOrder() == order;
+            }
+
+            if (same) {
+                System.out.println("✓ Reordered grids give the same plan costs");
+            } else {
+                System.out.println("✗ Cell order test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Cell order test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 23: One-to-many searches fill the cost matrix like per-pair UC
+     */
+    private static void testOneToManyMatrix() {
+        System.out.println("TEST 23: One-to-Many Cost Matrix");
+        System.out.println("--------------------------------");
+
+        String traffic = DeliverySearch.GenTraffic(12, 12);
+
+        try {
+            boolean ok = true;
+            // 1 truck, 6 customers: forward rows; 3 trucks, 1 customer: reverse columns
+            for (String initialState : new String[]{
+                    "12;12;6;1;11,11,3,9,8,2,5,5,0,11,10,0;2,2,9,9",
+                    "12;12;1;3;6,7;0,5,11,5"}) {
+                DeliverySearch ds = DeliverySearch.fromStrings(initialState, traffic);
+                List<State> trucks = new ArrayList<>();
+                trucks.add(new State(0, 0));
+                if (initialState.contains(";3;")) {
+                    trucks.add(new State(11, 11));
+                    trucks.add(new State(11, 0));
+                }
+                List<State> customers = new ArrayList<>();
+                String[] coords = initialState.split(";")[4].split(",");
+                for (int i = 0; i + 1 < coords.length; i += 2) {
+                    customers.add(new State(Integer.parseInt(coords[i]), Integer.parseInt(coords[i + 1])));
+                }
+
+                DeliveryPlanner perPair = new DeliveryPlanner(trucks, customers, trucks, ds, Strategy.UC);
+                perPair.setCostSource(DeliveryPlanner.CostSource.SEARCH);
+                perPair.setPruning(false);
+                DeliveryPlanner oneToMany = new DeliveryPlanner(trucks, customers, trucks, ds, Strategy.UC);
+                List<int[]> expected = perPair.assign();
+                List<int[]> actual = oneToMany.assign();
+                boolean same = expected.size() == actual.size();
+                for (int i = 0; same && i < expected.size(); i++) {
+                    same = Arrays.equals(expected.get(i), actual.get(i));
+                }
+
+                // Costs and rebuilt routes of a single one-to-many search
+                boolean reverse = trucks.size() > customers.size();
+                State source = reverse ? customers.get(0) : trucks.get(0);
+                OneToManySearch<State, Action> search =
+                        ds.oneToMany(source, reverse ? trucks : customers, reverse, true);
+                for (int i = 0; i < search.size(); i++) {
+                    State other = (reverse ? trucks : customers).get(i);
+                    GenericSearch.SearchResult<State, Action> uc =
+                            reverse ? ds.path(other, source, Strategy.UC) : ds.path(source, other, Strategy.UC);
+                    same &= search.cost(i) == uc.cost
+                            && (uc.cost == Double.POSITIVE_INFINITY || search.path(i).cost == uc.cost);
+                }
+
+                System.out.println("  " + trucks.size() + " trucks, " + customers.size() + " customers: "
+                        + oneToMany.effectiveCostSource() + " ran " + oneToMany.getMatrixSearches()
+                        + " searches (per pair: " + perPair.getMatrixSearches() + "), " + search);
+                ok &= same && oneToMany.effectiveCostSource() == DeliveryPlanner.CostSource.ONE_TO_MANY
+                        && oneToMany.getMatrixSearches() == Math.min(trucks.size(), customers.size())
+                        && perPair.getMatrixSearches() == trucks.size() * customers.size();
+            }
+
+            if (ok) {
+                System.out.println("✓ One-to-many matrices match per-pair searches");
+            } else {
+                System.out.println("✗ One-to-many matrix test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ One-to-many matrix test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 24: plan() reuses the matrix searches; cost-only searches match
+     */
+    private static void testPlannerReusesPaths() {
+        System.out.println("TEST 24: Planner Path Reuse and Cost-Only Searches");
+        System.out.println("--------------------------------------------------");
+
+        String initialState = "10;10;3;2;9,9,2,7,6,1;0,9,9,0";
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, DeliverySearch.GenTraffic(10, 10));
+        List<State> trucks = Arrays.asList(new State(0, 0), new State(9, 9));
+        List<State> customers = Arrays.asList(new State(9, 9), new State(2, 7), new State(6, 1));
+
+        try {
+            DeliveryPlanner planner = new DeliveryPlanner(trucks, customers, trucks, ds, Strategy.AS2);
+            planner.setCostSource(DeliveryPlanner.CostSource.SEARCH);
+            planner.setPruning(false);
+            List<int[]> assignments = planner.assign();
+            int searches = planner.getMatrixSearches();
+            boolean reused = true;
+            for (int[] assignment : assignments) {
+                State truck = trucks.get(assignment[0]);
+                State customer = customers.get(assignment[1]);
+                // The same cached result object, not a second search
+                reused &= planner.route(truck, customer) == planner.route(truck, customer);
+            }
+
+            DeliveryPlanner costOnly = new DeliveryPlanner(trucks, customers, trucks, ds, Strategy.AS2);
+            costOnly.setCostSource(DeliveryPlanner.CostSource.SEARCH);
+            costOnly.setCostOnlyMatrix(true);
+            List<int[]> costOnlyAssignments = costOnly.assign();
+            boolean sameAssignments = assignments.size() == costOnlyAssignments.size();
+            for (int i = 0; sameAssignments && i < assignments.size(); i++) {
+                sameAssignments = Arrays.equals(assignments.get(i), costOnlyAssignments.get(i));
+            }
+
+            boolean sameCosts = true;
+            SearchOptions options = ds.getSearchOptions().withCostOnly(true);
+            for (Strategy strategy : new Strategy[]{Strategy.UC, Strategy.AS2, Strategy.BUC}) {
+                GenericSearch.SearchResult<State, Action> full = ds.path(trucks.get(0), customers.get(1), strategy);
+                GenericSearch.SearchResult<State, Action> cost =
+                        ds.path(trucks.get(0), customers.get(1), strategy, options);
+                sameCosts &= full.cost == cost.cost && cost.actions.isEmpty() && !full.actions.isEmpty();
+            }
+            System.out.println("  Matrix searches: " + searches + ", assignments: " + assignments.size()
+                    + ", " + planner.getStats(assignments));
+
+            if (reused && searches == trucks.size() * customers.size() && sameAssignments && sameCosts) {
+                System.out.println("✓ Planner results reused; cost-only searches agree");
+            } else {
+                System.out.println("✗ Planner reuse test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Planner reuse test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 25: Shared path cache: exact costs across strategies, eviction,
+     * invalidation on traffic changes
+     */
+    private static void testPathCache() {
+        System.out.println("TEST 25: Shared Path Cache");
+        System.out.println("--------------------------");
+
+        String initialState = "10;10;4;2;9,0,3,8,7,4,1,5;";
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, generateUniformTraffic(10, 10, 2));
+        List<State> trucks = Arrays.asList(new State(0, 0), new State(9, 9));
+        List<State> customers = Arrays.asList(new State(9, 0), new State(3, 8), new State(7, 4), new State(1, 5));
+
+        try {
+            PathCache cache = ds.getPathCache();
+            DeliveryPlanner uc = new DeliveryPlanner(trucks, customers, trucks, ds, Strategy.UC);
+            uc.setCostSource(DeliveryPlanner.CostSource.SEARCH);
+            uc.setPruning(false);
+            uc.assign();
+            int ucSearches = uc.getMatrixSearches();
+
+            // AS2 is cost-optimal too: its matrix is read from UC's entries
+            DeliveryPlanner as2 = new DeliveryPlanner(trucks, customers, trucks, ds, Strategy.AS2);
+            as2.setCostSource(DeliveryPlanner.CostSource.SEARCH);
+            as2.setPruning(false);
+            as2.assign();
+            boolean shared = ucSearches == 8 && as2.getMatrixSearches() == 0;
+            System.out.println("  After UC and AS2 matrices: " + cache);
+
+            // A greedy strategy has costs of its own
+            DeliveryPlanner gr2 = new DeliveryPlanner(trucks, customers, trucks, ds, Strategy.GR2);
+            gr2.setCostSource(DeliveryPlanner.CostSource.SEARCH);
+            gr2.setPruning(false);
+            gr2.assign();
+            boolean separate = gr2.getMatrixSearches() == 8;
+
+            // Changing a road bumps the graph version and empties the cache
+            ds.getTrafficGrid().set(new State(0, 0), new State(0, 1), 4);
+            uc.assign();
+            boolean invalidated = cache.getInvalidations() == 1 && uc.getMatrixSearches() == 8;
+
+            // A small cache evicts least recently used entries by weight
+            PathCache small = new PathCache(40);
+            ds.setPathCache(small);
+            uc.assign();
+            boolean bounded = small.getWeight() <= 40 && small.getEvictions() > 0;
+            System.out.println("  Bounded cache: " + small);
+
+            // Callers share cached entries, so their actions cannot be changed
+            boolean readOnly = false;
+            try {
+                ds.cachedPath(new State(0, 0), new State(9, 0), Strategy.UC).actions.clear();
+            } catch (UnsupportedOperationException e) {
+                readOnly = ds.cachedPath(new State(0, 0), new State(9, 0), Strategy.UC).actions.size() > 0;
+            }
+
+            if (shared && separate && invalidated && bounded && readOnly) {
+                System.out.println("✓ Cache shared across strategies, bounded, invalidated and read-only");
+            } else {
+                System.out.println("✗ Path cache test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Path cache test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 26: Lower-bound truck pruning and cost-capped searches
+     */
+    private static void testTruckPruning() {
+        System.out.println("TEST 26: Bound-and-Prune Truck Selection");
+        System.out.println("----------------------------------------");
+
+        String initialState = "20;20;5;3;19,19,2,17,15,3,10,10,4,4;0,19,19,0";
+        String traffic = DeliverySearch.GenTraffic(20, 20);
+        List<State> trucks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            trucks.add(new State(i * 19 / 7, (i * 5) % 20));
+        }
+        List<State> customers = Arrays.asList(new State(19, 19), new State(2, 17), new State(15, 3),
+                new State(10, 10), new State(4, 4));
+
+        try {
+            boolean ok = true;
+            for (Strategy strategy : new Strategy[]{Strategy.UC, Strategy.AS2, Strategy.GR2}) {
+                DeliveryPlanner full = new DeliveryPlanner(trucks, customers, trucks,
+                        DeliverySearch.fromStrings(initialState, traffic), strategy);
+                full.setCostSource(DeliveryPlanner.CostSource.SEARCH);
+                full.setPruning(false);
+                DeliveryPlanner pruned = new DeliveryPlanner(trucks, customers, trucks,
+                        DeliverySearch.fromStrings(initialState, traffic), strategy);
+                pruned.setCostSource(DeliveryPlanner.CostSource.SEARCH);
+
+                List<int[]> expected = full.assign();
+                List<int[]> actual = pruned.assign();
+                boolean same = expected.size() == actual.size();
+                for (int i = 0; same && i < expected.size(); i++) {
+                    same = Arrays.equals(expected.get(i), actual.get(i));
+                }
+                System.out.println("  " + strategy + ": " + full.getMatrixSearches() + " searches unpruned, "
+                        + pruned.getMatrixSearches() + " pruned (" + pruned.getSearchesSkipped() + " skipped, "
+                        + pruned.getSearchesCutShort() + " cut short), same assignments " + same);
+                ok &= same && pruned.getMatrixSearches() < full.getMatrixSearches();
+            }
+
+            // A capped search gives up below the optimal cost and succeeds at it
+            DeliverySearch ds = DeliverySearch.fromStrings(initialState, traffic);
+            State from = new State(0, 0);
+            State to = new State(19, 19);
+            double optimal = ds.path(from, to, Strategy.UC).cost;
+            for (Strategy strategy : new Strategy[]{Strategy.UC, Strategy.AS2, Strategy.BAS2}) {
+                GenericSearch.SearchResult<State, Action> below =
+                        ds.path(from, to, strategy, ds.getSearchOptions().withCostBound(optimal - 1));
+                GenericSearch.SearchResult<State, Action> at =
+                        ds.path(from, to, strategy, ds.getSearchOptions().withCostBound(optimal));
+                ok &= below.boundExceeded && below.cost == Double.POSITIVE_INFINITY
+                        && !at.boundExceeded && at.cost == optimal;
+            }
+
+            // So do the node-based searches, on a problem without state ids
+            DeliveryQuery query = ds.query(from, to);
+            Problem<State, Action> plain = new Problem<State, Action>() {
+                public State initialState() { return query.initialState(); }
+                public boolean isGoal(State state) { return query.isGoal(state); }
+                public List<Action> actions(State state) { return query.actions(state); }
+                public State result(State state, Action action) { return query.result(state, action); }
+                public double stepCost(State state, Action action, State next) {
+                    return query.stepCost(state, action, next);
+                }
+            };
+            for (Strategy strategy : new Strategy[]{Strategy.UC, Strategy.AS2}) {
+                GenericSearch.SearchResult<State, Action> below = GenericSearch.search(plain, strategy,
+                        ds.getSearchOptions().withCostBound(optimal - 1), query.getH1(), query.getH2());
+                GenericSearch.SearchResult<State, Action> at = GenericSearch.search(plain, strategy,
+                        ds.getSearchOptions().withCostBound(optimal), query.getH1(), query.getH2());
+                ok &= below.boundExceeded && below.cost == Double.POSITIVE_INFINITY
+                        && !at.boundExceeded && at.cost == optimal;
+            }
+
+            if (ok) {
+                System.out.println("✓ Pruned planners assign like full ones with fewer searches");
+            } else {
+                System.out.println("✗ Truck pruning test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Truck pruning test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 27: Concurrent queries on one grid and parallel cost matrices
+     */
+    private static void testParallelQueries() {
+        System.out.println("TEST 27: Parallel Queries and Cost Matrices");
+        System.out.println("----------------------------------------");
+
+        String initialState = "30;30;10;3;29,29,2,27,25,3,10,10,4,24,17,8,22,19,6,6,28,1,13,21;"
+                + "0,29,29,0,5,5,20,20";
+        String traffic = DeliverySearch.GenTraffic(30, 30);
+        List<State> trucks = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            trucks.add(new State((i * 7) % 30, (i * 11) % 30));
+        }
+        List<State> customers = Arrays.asList(new State(29, 29), new State(2, 27), new State(25, 3),
+                new State(10, 10), new State(4, 24), new State(17, 8), new State(22, 19), new State(6, 6),
+                new State(28, 1), new State(13, 21));
+        Strategy[] strategies = {Strategy.UC, Strategy.AS2, Strategy.AS3, Strategy.AS4, Strategy.BAS2, Strategy.GR2};
+        // CH and HPA queries share their preprocessing but not their scratch arrays
+        Strategy[] searched = {Strategy.UC, Strategy.AS2, Strategy.AS3, Strategy.AS4, Strategy.BAS2, Strategy.GR2,
+                Strategy.CH, Strategy.HPA};
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            boolean ok = true;
+
+            // Many searches on one shared grid at once, against the same searches run one by one
+            DeliverySearch shared = DeliverySearch.fromStrings(initialState, traffic);
+            List<Callable<String>> queries = new ArrayList<>();
+            for (Strategy strategy : searched) {
+                for (State truck : trucks) {
+                    for (State customer : customers) {
+                        queries.add(() -> {
+                            GenericSearch.SearchResult<State, Action> r = shared.path(truck, customer, strategy);
+                            return r.actions + ";" + r.cost + ";" + r.nodesExpanded;
+                        });
+                    }
+                }
+            }
+            List<Future<String>> parallel = pool.invokeAll(queries);
+            DeliverySearch sequential = DeliverySearch.fromStrings(initialState, traffic);
+            int q = 0;
+            int mismatches = 0;
+            for (Strategy strategy : searched) {
+                for (State truck : trucks) {
+                    for (State customer : customers) {
+                        GenericSearch.SearchResult<State, Action> r = sequential.path(truck, customer, strategy);
+                        if (!parallel.get(q++).get().equals(r.actions + ";" + r.cost + ";" + r.nodesExpanded)) {
+                            mismatches++;
+                        }
+                    }
+                }
+            }
+            System.out.println("  " + queries.size() + " concurrent searches, " + mismatches + " differ from sequential");
+            ok &= mismatches == 0;
+
+            // Planner matrices with 1 (no executor), 2 and 4 threads
+            for (Strategy strategy : strategies) {
+                for (DeliveryPlanner.CostSource source : new DeliveryPlanner.CostSource[]{
+                        DeliveryPlanner.CostSource.SEARCH, DeliveryPlanner.CostSource.ONE_TO_MANY}) {
+                    String expected = null;
+                    for (int threads : new int[]{1, 2, 4}) {
+                        ExecutorService executor = threads == 1 ? null : Executors.newFixedThreadPool(threads);
+                        try {
+                            DeliveryPlanner planner = new DeliveryPlanner(trucks, customers, trucks,
+                                    DeliverySearch.fromStrings(initialState, traffic), strategy);
+                            planner.setCostSource(source);
+                            planner.setExecutor(executor);
+                            List<int[]> assignments = planner.assign();
+                            StringBuilder sb = new StringBuilder();
+                            for (int[] a : assignments) {
+                                sb.append(Arrays.toString(a));
+                            }
+                            String result = sb + " " + planner.getStats(assignments);
+                            if (expected == null) {
+                                expected = result;
+                            } else if (!expected.equals(result)) {
+                                System.out.println("  " + strategy + " " + source + " differs with " + threads + " threads");
+                                ok = false;
+                            }
+                        } finally {
+                            if (executor != null) {
+                                executor.shutdown();
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (ok) {
+                System.out.println("✓ Concurrent results match sequential ones for every thread count");
+            } else {
+                System.out.println("✗ Parallel query test failed");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Parallel query test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 28: Paths through a cell with several tunnels replay correctly
+     */
+    private static void testTunnelReplay() {
+        System.out.println("TEST 28: Replaying Paths Through Shared Tunnel Entrances");
+        System.out.println("--------------------------------------------------------");
+
+        // (3,1) enters tunnels to (6,0) (listed first) and to (2,1)
+        String initialState = "10;4;1;2;8,3;3,1,6,0,2,1,3,1";
+        StringBuilder traffic = new StringBuilder();
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 4; y++) {
+                for (int[] d : new int[][]{{-1, 0}, {1, 0}, {0, -1}, {0, 1}}) {
+                    if (x + d[0] >= 0 && x + d[0] < 10 && y + d[1] >= 0 && y + d[1] < 4) {
+                        traffic.append(x).append(',').append(y).append(',').append(x + d[0]).append(',')
+                                .append(y + d[1]).append(",2;");
+                    }
+                }
+            }
+        }
+        DeliverySearch ds = DeliverySearch.fromStrings(initialState, traffic.toString());
+        State start = new State(4, 1);
+        State goal = new State(2, 3);
+
+        try {
+            boolean ok = true;
+            for (Strategy strategy : Strategy.values()) {
+                String printed = DeliverySearch.path(ds, start, goal, strategy);
+                if (!replays(ds, start, goal, printed)) {
+                    System.out.println("  " + strategy + ": " + printed + " does not replay");
+                    ok = false;
+                }
+            }
+            String optimal = DeliverySearch.path(ds, start, goal, Strategy.UC);
+            System.out.println("  UC: " + optimal);
+            ok &= optimal.contains(Action.tunnelTo(new State(2, 1)));
+
+            // Both tunnels leave (0,0); the one to (4,4) is listed second
+            DeliverySearch corner = DeliverySearch.fromStrings("5;5;1;1;4,4;0,0,0,4,0,0,4,4",
+                    generateUniformTraffic(5, 5, 9));
+            String cornerPath = DeliverySearch.path(corner, new State(0, 0), new State(4, 4), Strategy.UC);
+            System.out.println("  5x5 UC: " + cornerPath);
+            ok &= cornerPath.startsWith("tunnel@4:4;")
+                    && replays(corner, new State(0, 0), new State(4, 4), cornerPath);
+
+            if (ok) {
+                System.out.println("✓ Every strategy's actions replay to the customer at the reported cost");
+            } else {
+                System.out.println("✗ Tunnel actions do not replay");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Tunnel replay test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Replays a printed "actions;cost;nodes" path over the grid's edges.
+     */
+    private static boolean replays(DeliverySearch ds, State start, State goal, String printed) {
+        String[] parts = printed.split(";");
+        State current = start;
+        double cost = 0;
+        for (String token : parts[0].isEmpty() ? new String[0] : parts[0].split(",")) {
+            Action action = Action.fromString(token);
+            State exit = Action.exitOf(token);
+            State next = exit != null ? exit : ds.result(current, action);
+            double[] step = {Double.POSITIVE_INFINITY};
+            ds.forEachSuccessor(current, (a, child, c) -> {
+                if (a == action && child.equals(next)) {
+                    step[0] = Math.min(step[0], c);
+                }
+            });
+            cost += step[0];
+            current = next;
+        }
+        return current.equals(goal) && cost == Integer.parseInt(parts[1]);
+    }
+
+    /**
+     * Test 29: Preprocessing follows traffic changes made after it was built
+     */
+    private static void testTrafficChanges() {
+        System.out.println("TEST 29: Traffic Changes After Preprocessing");
+        System.out.println("--------------------------------------------");
+
+        try {
+            // The only road out of (0,0) opens after SCC and CH were built
+            DeliverySearch line = DeliverySearch.fromStrings("1;3;1;1;0,2;", "0,1,0,2,1;");
+            State store = new State(0, 0);
+            State customer = new State(0, 2);
+            boolean blocked = !line.canReach(store, customer)
+                    && line.path(store, customer, Strategy.CH).cost == Double.POSITIVE_INFINITY;
+            line.getTrafficGrid().set(store, new State(0, 1), 1);
+            boolean opened = line.canReach(store, customer)
+                    && line.path(store, customer, Strategy.UC).cost == 2
+                    && line.path(store, customer, Strategy.CH).cost == 2;
+
+            // Raise, then lower, roads of a grid every strategy has preprocessed
+            DeliverySearch ds = DeliverySearch.fromStrings("6;6;1;1;5,5;0,0;", generateUniformTraffic(6, 6, 3));
+            int mismatches = compareOptimalStrategies(ds);
+            TrafficGrid grid = ds.getTrafficGrid();
+            for (int x = 0; x < 6; x++) {
+                for (int y = 0; y + 1 < 6; y++) {
+                    grid.set(new State(x, y), new State(x, y + 1), x % 2 == 0 ? 5 : 1);
+                }
+            }
+            mismatches += compareOptimalStrategies(ds);
+            for (int x = 0; x + 1 < 6; x++) {
+                grid.set(new State(x, 2), new State(x + 1, 2), 1);
+            }
+            mismatches += compareOptimalStrategies(ds);
+
+            System.out.println("  Blocked then opened: " + blocked + ", " + opened);
+            System.out.println("  Cost-optimal strategies differing from UC: " + mismatches);
+            if (blocked && opened && mismatches == 0) {
+                System.out.println("✓ Reachability, heuristics and preprocessing follow the traffic");
+            } else {
+                System.out.println("✗ Stale preprocessing after a traffic change");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Traffic change test FAILED: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.out.println();
+    }
+
+    /**
+     * Test 30: Endpoints outside the grid have no path under any strategy
+     */
+    private static void testOffGridEndpoints() {
+        System.out.println("TEST 30: Off-Grid Endpoints");
+        System.out.println("---------------------------");
+
+        DeliverySearch ds = DeliverySearch.fromStrings("5;5;1;1;4,4;0,0,0,4", generateUniformTraffic(5, 5, 1));
+        State[][] pairs = {
+                {new State(0, 5), new State(4, 4)},
+                {new State(-1, 0), new State(4, 4)},
+                {new State(5, 0), new State(4, 4)},
+                {new State(0, 0), new State(0, -1)},
+        };
+        int wrong = 0;
+        for (State[] pair : pairs) {
+            for (Strategy strategy : Strategy.values()) {
+                try {
+                    String printed = DeliverySearch.path(ds, pair[0], pair[1], strategy);
+                    if (!printed.equals("no path;0;0")) {
+                        System.out.println("  " + strategy + " " + pair[0] + " -> " + pair[1] + ": " + printed);
+                        wrong++;
+                    }
+                } catch (RuntimeException e) {
+                    System.out.println("  " + strategy + " " + pair[0] + " -> " + pair[1] + " threw " + e);
+                    wrong++;
+                }
+            }
+        }
+        if (wrong == 0) {
+            System.out.println("✓ Every strategy reports no path for off-grid endpoints");
+        } else {
+            System.out.println("✗ " + wrong + " off-grid queries returned a path or threw");
+        }
+        System.out.println();
+    }
+
+    /**
+     * Helper: Number of (pair, cost-optimal strategy) results whose cost
+     * differs from UC over every pair of cells of the grid
+     */
+    private static int compareOptimalStrategies(DeliverySearch ds) {
+        int mismatches = 0;
+        TrafficGrid grid = ds.getTrafficGrid();
+        for (int a = 0; a < grid.m * grid.n; a++) {
+            for (int b = 0; b < grid.m * grid.n; b++) {
+                State from = new State(a / grid.n, a % grid.n);
+                State to = new State(b / grid.n, b % grid.n);
+                double expected = ds.path(from, to, Strategy.UC).cost;
+                for (Strategy strategy : Strategy.values()) {
+                    if (strategy.isCostOptimal() && ds.path(from, to, strategy).cost != expected) {
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        return mismatches;
+    }
+
     /**
      * Helper: Extract total cost from result string
      */